@@ -0,0 +1,101 @@
+package com.nifasat.expenseService.bucketing;
+
+import com.nifasat.expenseService.dto.ExpenseCountDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buckets 100k expenses spread over two years, comparing {@link TimeBucketAccumulator} with the previous
+ * per-expense {@code DateTimeFormatter.ofPattern} + {@code Map<String, List<..>>} grouping and lexical sort.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TimeBucketingBenchmark {
+
+    private static final int EXPENSES = 100_000;
+
+    private static final long START = 1_672_531_200_000L; // 2023-01-01T00:00:00Z
+
+    private static final long SPAN = 2L * 365 * 86_400_000L;
+
+    @Param({"DAY", "WEEK", "MONTH", "YEAR"})
+    public Timeframe timeframe;
+
+    private final ZoneId zone = ZoneId.of("America/New_York");
+
+    private long[] createdAt;
+
+    private long[] amounts;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        createdAt = new long[EXPENSES];
+        amounts = new long[EXPENSES];
+        for (int i = 0; i < EXPENSES; i++) {
+            createdAt[i] = START + (long) (random.nextDouble() * SPAN);
+            amounts[i] = random.nextInt(100_000);
+        }
+    }
+
+    @Benchmark
+    public List<ExpenseCountDTO> accumulator() {
+        TimeBucketAccumulator buckets = new TimeBucketAccumulator(timeframe, zone, new Date(START), new Date(START + SPAN));
+        for (int i = 0; i < EXPENSES; i++) {
+            buckets.add(createdAt[i], amounts[i]);
+        }
+        return buckets.toCounts(false);
+    }
+
+    @Benchmark
+    public List<ExpenseCountDTO> formatterPerExpense() {
+        Map<String, List<Long>> grouped = new HashMap<>();
+        for (int i = 0; i < EXPENSES; i++) {
+            String key = DateTimeFormatter.ofPattern(legacyPattern())
+                    .format(Instant.ofEpochMilli(createdAt[i]).atZone(zone));
+            grouped.computeIfAbsent(key, ignored -> new ArrayList<>()).add(amounts[i]);
+        }
+        List<ExpenseCountDTO> counts = new ArrayList<>(grouped.size());
+        for (Map.Entry<String, List<Long>> entry : grouped.entrySet()) {
+            long total = 0;
+            for (Long amount : entry.getValue()) {
+                total += amount;
+            }
+            counts.add(new ExpenseCountDTO(entry.getKey(), entry.getValue().size(), total));
+        }
+        counts.sort(Comparator.comparing(ExpenseCountDTO::getTimePeriod));
+        return counts;
+    }
+
+    private String legacyPattern() {
+        switch (timeframe) {
+            case DAY:
+                return "yyyy-MM-dd";
+            case WEEK:
+                return "YYYY-'W'ww";
+            case MONTH:
+                return "yyyy-MM";
+            default:
+                return "yyyy";
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.nifasat.expenseService.deserializer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nifasat.expenseService.dto.ExpenseDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the shared-reader deserializer with the previous implementation, which built an
+ * {@link ObjectMapper} per message and re-serialized every record for logging. Run with
+ * {@code ./gradlew jmh}; the gc profiler reports bytes/op.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ExpenseDeserializerBenchmark {
+
+    private final ExpenseDeserializer expenseDeserializer = new ExpenseDeserializer();
+
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        payload = ("{\"externalId\":\"6f1d8c1e-2b1a-4f7e-9a61-0f5c3a7d2e11\",\"amount\":1249.5,"
+                + "\"userId\":\"user-42\",\"merchant\":\"Amazon\",\"currency\":\"INR\","
+                + "\"createdAt\":\"2024-03-18T09:41:27.512Z\"}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public ExpenseDto sharedReader() {
+        return expenseDeserializer.deserialize("register_expense", payload);
+    }
+
+    @Benchmark
+    public ExpenseDto mapperPerMessage() throws Exception {
+        // Previous behaviour minus the System.out call, which would dominate the measurement
+        ObjectMapper objectMapper = new ObjectMapper();
+        ExpenseDto expenseDto = objectMapper.readValue(payload, ExpenseDto.class);
+        objectMapper.writeValueAsString(expenseDto);
+        return expenseDto;
+    }
+}
@@ -0,0 +1,79 @@
+package com.nifasat.expenseService.fx;
+
+import com.nifasat.expenseService.money.Amounts;
+import com.nifasat.expenseService.summary.CurrencyDayTotals;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base-currency normalization of a year of expenses (one million rows, four currencies, daily rates): converting
+ * every row at its day's rate versus grouping by (day, currency) in {@link CurrencyDayTotals} first and converting
+ * each group once, which is what the summary endpoints do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CurrencyConversionBenchmark {
+
+    private static final int EXPENSES = 1_000_000;
+    private static final String[] CURRENCIES = {"INR", "USD", "EUR", "GBP"};
+    private static final long FIRST_DAY = LocalDate.of(2024, 1, 1).toEpochDay();
+
+    private FxRates rates;
+    private long[] epochDays;
+    private String[] currencies;
+    private long[] minorAmounts;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        Map<String, NavigableMap<LocalDate, Double>> ratesByCurrency = new HashMap<>();
+        for (int c = 1; c < CURRENCIES.length; c++) {
+            NavigableMap<LocalDate, Double> daily = new TreeMap<>();
+            for (int day = 0; day < 366; day++) {
+                daily.put(LocalDate.ofEpochDay(FIRST_DAY + day), 80.0 + c + random.nextDouble());
+            }
+            ratesByCurrency.put(CURRENCIES[c], daily);
+        }
+        rates = FxRates.of("INR", ratesByCurrency);
+        epochDays = new long[EXPENSES];
+        currencies = new String[EXPENSES];
+        minorAmounts = new long[EXPENSES];
+        for (int i = 0; i < EXPENSES; i++) {
+            epochDays[i] = FIRST_DAY + (long) i * 366 / EXPENSES;
+            currencies[i] = CURRENCIES[random.nextInt(10) < 7 ? 0 : 1 + random.nextInt(CURRENCIES.length - 1)];
+            minorAmounts[i] = random.nextInt(10_000_000);
+        }
+    }
+
+    @Benchmark
+    public double convertEveryRow() {
+        double total = 0;
+        for (int i = 0; i < EXPENSES; i++) {
+            total += rates.convert(Amounts.toMajor(minorAmounts[i]), currencies[i], epochDays[i]);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public double convertPerDayAndCurrency() {
+        CurrencyDayTotals totals = new CurrencyDayTotals();
+        for (int i = 0; i < EXPENSES; i++) {
+            totals.add(epochDays[i], currencies[i], 1, minorAmounts[i]);
+        }
+        return totals.normalizedTotal(rates);
+    }
+}
@@ -0,0 +1,62 @@
+package com.nifasat.expenseService.mapper;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nifasat.expenseService.dto.ExpenseDto;
+import com.nifasat.expenseService.entity.Expense;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity to DTO conversion of a 10k row list, as returned by the list endpoints: the previous
+ * {@code ObjectMapper.convertValue} round trip against {@link ExpenseMapper}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ExpenseMapperBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final ExpenseMapper expenseMapper = new ExpenseMapper();
+
+    private List<Expense> expenses;
+
+    @Setup
+    public void setUp() {
+        expenses = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            expenses.add(Expense.builder()
+                    .id((long) i)
+                    .externalId("external-" + i)
+                    .userId("user-42")
+                    .amountMinor(i * 125L)
+                    .currency("INR")
+                    .merchant("merchant-" + (i % 50))
+                    .createdAt(new Date(1_700_000_000_000L + i * 60_000L))
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public List<ExpenseDto> convertValue() {
+        return objectMapper.convertValue(expenses, new TypeReference<List<ExpenseDto>>() {});
+    }
+
+    @Benchmark
+    public List<ExpenseDto> mapper() {
+        return expenseMapper.toDtos(expenses);
+    }
+}
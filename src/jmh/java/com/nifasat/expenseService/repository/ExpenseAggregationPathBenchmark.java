@@ -0,0 +1,104 @@
+package com.nifasat.expenseService.repository;
+
+import com.nifasat.expenseService.ExpenseServiceApplication;
+import com.nifasat.expenseService.dto.MerchantDayGroup;
+import com.nifasat.expenseService.entity.Expense;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Latency of the merchant summary per history size: hydrating every entity and grouping in Java versus the
+ * (merchant, currency, day) GROUP BY projection in {@link ExpenseRepository}. The application runs in-process on
+ * an in-memory H2 database with the Kafka listener stopped.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExpenseAggregationPathBenchmark {
+
+    private static final long START = 1_600_000_000_000L;
+
+    @Param({"1000", "10000", "100000"})
+    private int rows;
+
+    private ConfigurableApplicationContext context;
+    private ExpenseRepository expenseRepository;
+    private String userId;
+    private Date startTime;
+    private Date endTime;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("spring.datasource.url", "jdbc:h2:mem:aggregation-" + rows + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+        properties.put("spring.jpa.show-sql", false);
+        properties.put("spring.flyway.enabled", false);
+        properties.put("spring.kafka.listener.auto-startup", false);
+        context = new SpringApplicationBuilder(ExpenseServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(properties)
+                .run();
+        expenseRepository = context.getBean(ExpenseRepository.class);
+        userId = "bench-" + rows;
+        startTime = new Date(START);
+        endTime = new Date(Long.MAX_VALUE / 2);
+        seed();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Map<String, Long> entityGrouping() {
+        return expenseRepository.findByUserIdAndCreatedAtBetween(userId, startTime, endTime)
+                .stream()
+                .collect(Collectors.groupingBy(Expense::getMerchant, Collectors.summingLong(Expense::getAmountMinor)));
+    }
+
+    @Benchmark
+    public List<MerchantDayGroup> groupByProjection() {
+        return expenseRepository.summarizeByMerchantCurrencyAndDay(userId, startTime, endTime);
+    }
+
+    private void seed() {
+        List<Expense> batch = new ArrayList<>(5_000);
+        for (int i = 0; i < rows; i++) {
+            batch.add(Expense.builder()
+                    .userId(userId)
+                    .externalId(userId + "-" + i)
+                    .amountMinor((long) (i % 1_000) * 100)
+                    .currency("INR")
+                    .merchant("merchant-" + (i % 50))
+                    .build());
+            if (batch.size() == 5_000) {
+                expenseRepository.saveAll(batch);
+                batch.clear();
+            }
+        }
+        expenseRepository.saveAll(batch);
+    }
+}
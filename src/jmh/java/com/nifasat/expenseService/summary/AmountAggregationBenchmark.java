@@ -0,0 +1,84 @@
+package com.nifasat.expenseService.summary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregation throughput over one million expenses with amounts as boxed {@code Double}s, the previous
+ * representation, versus {@code long} minor units. The boxed variants mirror the old
+ * {@code mapToDouble(Expense::getAmount)} and {@code Map<String, Double>} grouping code.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AmountAggregationBenchmark {
+
+    private static final int EXPENSES = 1_000_000;
+    private static final long START = 1_600_000_000_000L;
+
+    private List<Double> boxedAmounts;
+    private long[] minorAmounts;
+    private long[] createdAt;
+    private String[] merchants;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        boxedAmounts = new ArrayList<>(EXPENSES);
+        minorAmounts = new long[EXPENSES];
+        createdAt = new long[EXPENSES];
+        merchants = new String[EXPENSES];
+        for (int i = 0; i < EXPENSES; i++) {
+            long minor = random.nextInt(10_000_000);
+            minorAmounts[i] = minor;
+            boxedAmounts.add(minor / 100.0);
+            createdAt[i] = START + i * 60_000L;
+            merchants[i] = "merchant-" + random.nextInt(200);
+        }
+    }
+
+    @Benchmark
+    public double boxedDoubleTotal() {
+        return boxedAmounts.stream().mapToDouble(Double::doubleValue).sum();
+    }
+
+    @Benchmark
+    public long minorUnitTotal() {
+        long total = 0;
+        for (long amount : minorAmounts) {
+            total += amount;
+        }
+        return total;
+    }
+
+    @Benchmark
+    public Map<String, Double> boxedDoubleMerchantTotals() {
+        Map<String, Double> totals = new HashMap<>();
+        for (int i = 0; i < EXPENSES; i++) {
+            totals.merge(merchants[i], boxedAmounts.get(i), Double::sum);
+        }
+        return totals;
+    }
+
+    @Benchmark
+    public ExpenseSummaryAccumulator minorUnitSummary() {
+        ExpenseSummaryAccumulator summary = new ExpenseSummaryAccumulator(ZoneId.of("UTC"));
+        for (int i = 0; i < EXPENSES; i++) {
+            summary.add(i, createdAt[i], minorAmounts[i], "INR", merchants[i]);
+        }
+        return summary;
+    }
+}
@@ -0,0 +1,117 @@
+package com.nifasat.expenseService.loadtest;
+
+import com.nifasat.expenseService.ExpenseServiceApplication;
+import com.nifasat.expenseService.dto.ExpenseDto;
+import com.nifasat.expenseService.repository.ExpenseRepository;
+import com.nifasat.expenseService.service.ExpenseService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The service started in-process against an in-memory H2 database and an embedded Kafka broker, seeded with
+ * synthetic users so runs are repeatable without any infrastructure. Seeding goes through
+ * {@link ExpenseService#createExpenses}, so rollups are built exactly as they are for consumed records.
+ */
+final class EmbeddedExpenseService implements AutoCloseable {
+
+    static final String TOPIC = "register_expense";
+
+    private static final String DEAD_LETTER_TOPIC = "register_expense.DLT";
+    private static final int SEED_BATCH = 5_000;
+    private static final Duration HISTORY = Duration.ofDays(365);
+    private static final String[] CURRENCIES = {"INR", "INR", "INR", "INR", "USD"};
+
+    private final EmbeddedKafkaBroker broker;
+
+    private final ConfigurableApplicationContext context;
+
+    private EmbeddedExpenseService(EmbeddedKafkaBroker broker, ConfigurableApplicationContext context) {
+        this.broker = broker;
+        this.context = context;
+    }
+
+    static EmbeddedExpenseService start() {
+        EmbeddedKafkaBroker broker = new EmbeddedKafkaKraftBroker(1, 4, TOPIC, DEAD_LETTER_TOPIC);
+        broker.afterPropertiesSet();
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("server.port", 0);
+        properties.put("spring.datasource.url", "jdbc:h2:mem:loadtest;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+        properties.put("spring.jpa.show-sql", false);
+        properties.put("spring.flyway.enabled", false);
+        properties.put("spring.kafka.bootstrap-servers", broker.getBrokersAsString());
+        properties.put("spring.kafka.consumer.auto-offset-reset", "earliest");
+        try {
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(ExpenseServiceApplication.class)
+                    .properties(properties)
+                    .run();
+            return new EmbeddedExpenseService(broker, context);
+        } catch (RuntimeException ex) {
+            broker.destroy();
+            throw ex;
+        }
+    }
+
+    String baseUrl() {
+        return "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+    }
+
+    String bootstrapServers() {
+        return broker.getBrokersAsString();
+    }
+
+    long expenseCount() {
+        return context.getBean(ExpenseRepository.class).count();
+    }
+
+    /**
+     * Creates {@code usersPerSize} users for every history size, each with that many expenses spread over the last
+     * year across 50 merchants. The seed is fixed, so every run starts from the same data. Returns the user ids.
+     */
+    List<String> seed(List<Integer> historySizes, int usersPerSize) {
+        ExpenseService expenseService = context.getBean(ExpenseService.class);
+        Random random = new Random(42);
+        long end = System.currentTimeMillis();
+        long start = end - HISTORY.toMillis();
+        List<String> userIds = new ArrayList<>();
+        for (int historySize : historySizes) {
+            for (int n = 0; n < usersPerSize; n++) {
+                String userId = "load-" + historySize + "-" + n;
+                userIds.add(userId);
+                List<ExpenseDto> batch = new ArrayList<>(SEED_BATCH);
+                for (int i = 0; i < historySize; i++) {
+                    long createdAt = start + (long) ((double) i / historySize * HISTORY.toMillis());
+                    batch.add(new ExpenseDto(userId + "-" + i, null, (long) random.nextInt(500_000), userId,
+                            "merchant-" + random.nextInt(50), CURRENCIES[random.nextInt(CURRENCIES.length)], new Date(createdAt)));
+                    if (batch.size() == SEED_BATCH) {
+                        expenseService.createExpenses(batch);
+                        batch = new ArrayList<>(SEED_BATCH);
+                    }
+                }
+                expenseService.createExpenses(batch);
+            }
+        }
+        return userIds;
+    }
+
+    @Override
+    public void close() {
+        try {
+            context.close();
+        } finally {
+            broker.destroy();
+        }
+    }
+}
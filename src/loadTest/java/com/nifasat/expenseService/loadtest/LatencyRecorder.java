@@ -0,0 +1,32 @@
+package com.nifasat.expenseService.loadtest;
+
+import java.util.Arrays;
+
+/** Successful request latencies in nanoseconds, kept raw so percentiles are exact. Not thread-safe. */
+final class LatencyRecorder {
+
+    private long[] values = new long[1024];
+
+    private int size;
+
+    void add(long nanos) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = nanos;
+    }
+
+    int size() {
+        return size;
+    }
+
+    double percentileMillis(double percentile) {
+        if (size == 0) {
+            return Double.NaN;
+        }
+        long[] sorted = Arrays.copyOf(values, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+        return sorted[Math.max(0, Math.min(index, size - 1))] / 1e6;
+    }
+}
@@ -0,0 +1,335 @@
+package com.nifasat.expenseService.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Load generator for the REST endpoints and the {@code register_expense} topic. Results are printed as throughput
+ * and p50/p95/p99 latency per target and written as a JSON report ({@code --report}, by default
+ * {@code build/load-test/<label>.json}) so runs can be compared over time.
+ * <p>
+ * Against a running instance, workers cycle through the dashboard read endpoints in a closed loop, so the platform
+ * and virtual-thread modes can be compared by starting the service with {@code VIRTUAL_THREADS_ENABLED} false and
+ * then true:
+ * <pre>
+ * ./gradlew loadTest -PloadTestArgs="--base-url=http://localhost:8084 --user-id=user-1 --concurrency=400 --duration=PT60S --label=virtual"
+ * </pre>
+ * With {@code --embedded=true} the service is started in-process on H2 and an embedded broker and seeded with
+ * {@code --users-per-size} synthetic users for each of the {@code --history-sizes}. {@code --rest-rate} and
+ * {@code --kafka-rate} switch to an open loop at that many requests or records per second; the Kafka side also
+ * reports how long the consumer took to persist everything that was produced:
+ * <pre>
+ * ./gradlew loadTest -PloadTestArgs="--embedded=true --history-sizes=1000,100000 --rest-rate=500 --kafka-rate=2000 --duration=PT60S --label=baseline"
+ * </pre>
+ */
+public class LoadTestRunner {
+
+    private static final DateTimeFormatter CREATED_AT = DateTimeFormatter
+            .ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    private static final Duration INGESTION_TIMEOUT = Duration.ofMinutes(5);
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        boolean embedded = Boolean.parseBoolean(options.getOrDefault("embedded", "false"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "200"));
+        double restRate = Double.parseDouble(options.getOrDefault("rest-rate", "0"));
+        double kafkaRate = Double.parseDouble(options.getOrDefault("kafka-rate", "0"));
+        Duration duration = Duration.parse(options.getOrDefault("duration", "PT30S"));
+        String label = options.getOrDefault("label", "run");
+        Path reportPath = Path.of(options.getOrDefault("report", "build/load-test/" + label + ".json"));
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("label", label);
+        report.put("startedAt", Instant.now().toString());
+        report.put("options", new LinkedHashMap<>(options));
+
+        EmbeddedExpenseService service = null;
+        try {
+            String baseUrl;
+            String bootstrapServers;
+            String topic;
+            List<String> userIds;
+            if (embedded) {
+                service = EmbeddedExpenseService.start();
+                baseUrl = service.baseUrl();
+                bootstrapServers = service.bootstrapServers();
+                topic = EmbeddedExpenseService.TOPIC;
+                List<Integer> historySizes = Arrays.stream(options.getOrDefault("history-sizes", "1000,10000").split(","))
+                        .map(String::trim)
+                        .map(Integer::parseInt)
+                        .collect(Collectors.toList());
+                int usersPerSize = Integer.parseInt(options.getOrDefault("users-per-size", "1"));
+                long seedStart = System.nanoTime();
+                userIds = service.seed(historySizes, usersPerSize);
+                double seedSeconds = (System.nanoTime() - seedStart) / 1e9;
+                Map<String, Object> seed = new LinkedHashMap<>();
+                seed.put("users", userIds.size());
+                seed.put("expenses", service.expenseCount());
+                seed.put("seconds", seedSeconds);
+                report.put("seed", seed);
+                System.out.printf("Seeded %d users with %d expenses in %.1fs%n", userIds.size(), service.expenseCount(), seedSeconds);
+            } else {
+                baseUrl = options.getOrDefault("base-url", "http://localhost:8084");
+                bootstrapServers = options.get("bootstrap-servers");
+                topic = options.getOrDefault("topic", "register_expense");
+                userIds = List.of(options.getOrDefault("user-id", "user-1"));
+            }
+            if (kafkaRate > 0 && Objects.isNull(bootstrapServers)) {
+                throw new IllegalArgumentException("--kafka-rate needs --embedded=true or --bootstrap-servers");
+            }
+
+            List<Map<String, Object>> results = new ArrayList<>();
+            ExecutorService kafkaThread = Executors.newSingleThreadExecutor();
+            Future<Map<String, Object>> kafkaResult = null;
+            if (kafkaRate > 0) {
+                EmbeddedExpenseService ingestion = service;
+                kafkaResult = kafkaThread.submit(() -> produce(bootstrapServers, topic, userIds, label, kafkaRate, duration, ingestion));
+            }
+            if (restRate > 0) {
+                results.addAll(driveRestOpenLoop(baseUrl, userIds, restRate, duration));
+            } else if (concurrency > 0) {
+                results.addAll(driveRestClosedLoop(baseUrl, userIds, concurrency, duration));
+            }
+            if (kafkaResult != null) {
+                Map<String, Object> kafka = kafkaResult.get();
+                results.add(kafka);
+                if (kafka.containsKey("ingestion")) {
+                    report.put("ingestion", kafka.remove("ingestion"));
+                }
+            }
+            kafkaThread.shutdown();
+            report.put("results", results);
+        } finally {
+            if (service != null) {
+                service.close();
+            }
+        }
+
+        if (reportPath.getParent() != null) {
+            Files.createDirectories(reportPath.getParent());
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(reportPath.toFile(), report);
+        System.out.println("Report written to " + reportPath.toAbsolutePath());
+    }
+
+    private static List<RestEndpoint> restEndpoints(String baseUrl) {
+        long end = System.currentTimeMillis();
+        long start = end - Duration.ofDays(365).toMillis();
+        String range = "&start_date=" + start + "&end_date=" + end;
+        return List.of(
+                RestEndpoint.get("summary", userId -> baseUrl + "/expense/v1/summary?user_id=" + userId),
+                RestEndpoint.get("count", userId -> baseUrl + "/expense/v1/count?user_id=" + userId + "&time_frame=day" + range),
+                RestEndpoint.get("merchant-summary", userId -> baseUrl + "/expense/v1/merchant-summary?user_id=" + userId + range),
+                RestEndpoint.get("all", userId -> baseUrl + "/expense/v1/all?user_id=" + userId + "&page_size=100"));
+    }
+
+    private static List<Map<String, Object>> driveRestClosedLoop(String baseUrl, List<String> userIds, int concurrency,
+                                                                 Duration duration) throws Exception {
+        List<RestEndpoint> endpoints = restEndpoints(baseUrl);
+        HttpClient httpClient = httpClient(Math.max(4, concurrency / 50));
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        long deadline = System.nanoTime() + duration.toNanos();
+
+        List<Future<?>> futures = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            int offset = i;
+            futures.add(workers.submit(() -> runWorker(httpClient, endpoints, userIds, offset, deadline)));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        workers.shutdown();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+        return summarize(endpoints.stream().map(RestEndpoint::measurement).collect(Collectors.toList()), duration, null);
+    }
+
+    private static void runWorker(HttpClient httpClient, List<RestEndpoint> endpoints, List<String> userIds, int offset,
+                                  long deadline) {
+        for (int i = offset; System.nanoTime() < deadline; i++) {
+            RestEndpoint endpoint = endpoints.get(i % endpoints.size());
+            HttpRequest request = endpoint.request().apply(userIds.get((i / endpoints.size()) % userIds.size()), (long) i);
+            long start = System.nanoTime();
+            try {
+                HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() >= 400) {
+                    endpoint.measurement().error();
+                    continue;
+                }
+                endpoint.measurement().success(System.nanoTime() - start);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                endpoint.measurement().error();
+            }
+        }
+    }
+
+    /** The read endpoints plus single-expense writes, which also exercise cache invalidation and rollup refreshes. */
+    private static List<Map<String, Object>> driveRestOpenLoop(String baseUrl, List<String> userIds, double rate,
+                                                               Duration duration) throws InterruptedException {
+        List<RestEndpoint> endpoints = new ArrayList<>(restEndpoints(baseUrl));
+        endpoints.add(new RestEndpoint(new Measurement("rest:add-expense"), (userId, sequence) ->
+                HttpRequest.newBuilder(URI.create(baseUrl + "/expense/v1/addExpense"))
+                        .timeout(Duration.ofSeconds(30))
+                        .header("Content-Type", "application/json")
+                        .header("X-User-Id", userId)
+                        .POST(HttpRequest.BodyPublishers.ofString(expenseJson("rest-" + sequence, userId, sequence)))
+                        .build()));
+        HttpClient httpClient = httpClient(Math.max(4, (int) (rate / 100)));
+        List<OpenLoopDriver.Target> targets = new ArrayList<>();
+        for (RestEndpoint endpoint : endpoints) {
+            targets.add(new OpenLoopDriver.Target(endpoint.measurement(), sequence -> {
+                String userId = userIds.get((int) ((sequence / endpoints.size()) % userIds.size()));
+                return httpClient.sendAsync(endpoint.request().apply(userId, sequence), HttpResponse.BodyHandlers.discarding())
+                        .thenApply(response -> {
+                            if (response.statusCode() >= 400) {
+                                throw new CompletionException(new IllegalStateException("HTTP " + response.statusCode()));
+                            }
+                            return response;
+                        });
+            }));
+        }
+        OpenLoopDriver.Outcome outcome = OpenLoopDriver.run(rate, duration, targets);
+        warnIfTimedOut("REST", outcome);
+        return summarize(endpoints.stream().map(RestEndpoint::measurement).collect(Collectors.toList()), duration,
+                rate / endpoints.size());
+    }
+
+    /**
+     * Produces expenses with unique external ids at the target rate; latency is the broker acknowledgement. When the
+     * service runs in-process, also waits for the consumer to persist every acknowledged record.
+     */
+    private static Map<String, Object> produce(String bootstrapServers, String topic, List<String> userIds, String label,
+                                               double rate, Duration duration, EmbeddedExpenseService service) throws Exception {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ProducerConfig.ACKS_CONFIG, "all");
+        config.put(ProducerConfig.LINGER_MS_CONFIG, 5);
+        Measurement measurement = new Measurement("kafka:" + topic);
+        long before = Objects.isNull(service) ? 0 : service.expenseCount();
+        long start = System.nanoTime();
+        OpenLoopDriver.Outcome outcome;
+        try (KafkaProducer<String, String> producer = new KafkaProducer<>(config, new StringSerializer(), new StringSerializer())) {
+            outcome = OpenLoopDriver.run(rate, duration, List.of(new OpenLoopDriver.Target(measurement, sequence -> {
+                String userId = userIds.get((int) (sequence % userIds.size()));
+                CompletableFuture<Void> acknowledged = new CompletableFuture<>();
+                producer.send(new ProducerRecord<>(topic, userId, expenseJson("kafka-" + label + "-" + sequence, userId, sequence)),
+                        (metadata, ex) -> {
+                            if (ex == null) {
+                                acknowledged.complete(null);
+                            } else {
+                                acknowledged.completeExceptionally(ex);
+                            }
+                        });
+                return acknowledged;
+            })));
+        }
+        warnIfTimedOut("Kafka", outcome);
+        Map<String, Object> result = summarize(List.of(measurement), duration, rate).get(0);
+        if (Objects.nonNull(service)) {
+            long expected = outcome.started();
+            long persisted = 0;
+            long deadline = System.nanoTime() + INGESTION_TIMEOUT.toNanos();
+            while (persisted < expected && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(200);
+                persisted = service.expenseCount() - before;
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            Map<String, Object> ingestion = new LinkedHashMap<>();
+            ingestion.put("produced", expected);
+            ingestion.put("persisted", persisted);
+            ingestion.put("seconds", seconds);
+            ingestion.put("throughput", persisted / seconds);
+            result.put("ingestion", ingestion);
+            System.out.printf("Ingested %d of %d produced expenses in %.2fs (%.0f records/s)%n",
+                    persisted, expected, seconds, persisted / seconds);
+        }
+        return result;
+    }
+
+    private static List<Map<String, Object>> summarize(List<Measurement> measurements, Duration duration, Double targetRate) {
+        double seconds = duration.toNanos() / 1e9;
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (Measurement measurement : measurements) {
+            System.out.println(measurement.describe(seconds));
+            results.add(measurement.toReport(seconds, targetRate));
+        }
+        return results;
+    }
+
+    private static void warnIfTimedOut(String target, OpenLoopDriver.Outcome outcome) {
+        if (outcome.timedOut() > 0) {
+            System.out.printf("%s: %d of %d operations had not completed when the run ended%n", target, outcome.timedOut(),
+                    outcome.started());
+        }
+    }
+
+    private static String expenseJson(String externalId, String userId, long sequence) {
+        return "{\"externalId\":\"" + externalId + "\",\"amountMinor\":" + (sequence % 50_000) * 7
+                + ",\"userId\":\"" + userId + "\",\"merchant\":\"merchant-" + (sequence % 50) + "\""
+                + ",\"currency\":\"INR\",\"createdAt\":\"" + CREATED_AT.format(Instant.now()) + "\"}";
+    }
+
+    private static HttpClient httpClient(int threads) {
+        return HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newFixedThreadPool(threads))
+                .build();
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            int separator = arg.indexOf('=');
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+
+    private record RestEndpoint(Measurement measurement, BiFunction<String, Long, HttpRequest> request) {
+
+        static RestEndpoint get(String name, Function<String, String> uri) {
+            return new RestEndpoint(new Measurement("rest:" + name), (userId, sequence) ->
+                    HttpRequest.newBuilder(URI.create(uri.apply(userId)))
+                            .timeout(Duration.ofSeconds(30))
+                            .GET()
+                            .build());
+        }
+    }
+}
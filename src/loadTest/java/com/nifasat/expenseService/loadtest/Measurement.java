@@ -0,0 +1,55 @@
+package com.nifasat.expenseService.loadtest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Latencies and failures of one target, safe to record into from completion callbacks. */
+final class Measurement {
+
+    private final String name;
+
+    private final LatencyRecorder latencies = new LatencyRecorder();
+
+    private long errors;
+
+    Measurement(String name) {
+        this.name = name;
+    }
+
+    synchronized void success(long nanos) {
+        latencies.add(nanos);
+    }
+
+    synchronized void error() {
+        errors++;
+    }
+
+    synchronized String describe(double seconds) {
+        return String.format("%-24s requests=%d errors=%d throughput=%.1f/s p50=%.2fms p95=%.2fms p99=%.2fms",
+                name, latencies.size(), errors, latencies.size() / seconds,
+                latencies.percentileMillis(50), latencies.percentileMillis(95), latencies.percentileMillis(99));
+    }
+
+    /** One entry of the JSON report; {@code targetRate} is null for closed-loop runs. */
+    synchronized Map<String, Object> toReport(double seconds, Double targetRate) {
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("p50", finite(latencies.percentileMillis(50)));
+        latency.put("p90", finite(latencies.percentileMillis(90)));
+        latency.put("p95", finite(latencies.percentileMillis(95)));
+        latency.put("p99", finite(latencies.percentileMillis(99)));
+        latency.put("p999", finite(latencies.percentileMillis(99.9)));
+        latency.put("max", finite(latencies.percentileMillis(100)));
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("name", name);
+        report.put("targetRate", targetRate);
+        report.put("requests", latencies.size());
+        report.put("errors", errors);
+        report.put("throughput", latencies.size() / seconds);
+        report.put("latencyMillis", latency);
+        return report;
+    }
+
+    private static Double finite(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+}
@@ -0,0 +1,66 @@
+package com.nifasat.expenseService.loadtest;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+
+/**
+ * Starts operations at a fixed target rate regardless of how fast earlier ones complete, cycling through the
+ * targets. Latency is measured from each operation's scheduled start rather than from when it was actually
+ * issued, so a service that falls behind shows up in the percentiles instead of silently lowering the rate.
+ */
+final class OpenLoopDriver {
+
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
+    private OpenLoopDriver() {
+    }
+
+    /** An asynchronous operation; the future fails when the operation did. */
+    record Target(Measurement measurement, LongFunction<CompletableFuture<?>> operation) {
+    }
+
+    /** Operations started, and those still running when the drain timeout expired. */
+    record Outcome(long started, long timedOut) {
+    }
+
+    static Outcome run(double ratePerSecond, Duration duration, List<Target> targets) throws InterruptedException {
+        long intervalNanos = (long) (1e9 / ratePerSecond);
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        AtomicLong inFlight = new AtomicLong();
+        long sequence = 0;
+        for (long scheduled = start; scheduled < deadline; scheduled = start + ++sequence * intervalNanos) {
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Target target = targets.get((int) (sequence % targets.size()));
+            long intended = scheduled;
+            inFlight.incrementAndGet();
+            CompletableFuture<?> future;
+            try {
+                future = target.operation().apply(sequence);
+            } catch (RuntimeException ex) {
+                future = CompletableFuture.failedFuture(ex);
+            }
+            future.whenComplete((result, ex) -> {
+                if (ex == null) {
+                    target.measurement().success(System.nanoTime() - intended);
+                } else {
+                    target.measurement().error();
+                }
+                inFlight.decrementAndGet();
+            });
+        }
+        long drainDeadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        return new Outcome(sequence, inFlight.get());
+    }
+}
@@ -0,0 +1,187 @@
+package com.nifasat.expenseService.archive;
+
+import com.nifasat.expenseService.entity.Expense;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Column-oriented, gzip-compressed encoding of one user's expenses. Each column is written contiguously: ids,
+ * creation times and minor-unit amounts as zig-zag varint deltas behind a null bitmap (rows are sorted, so most id and
+ * time deltas fit in one or two bytes), and strings dictionary-encoded. The user id is implied by the file's location.
+ */
+public final class ExpenseArchiveCodec {
+
+    private static final int MAGIC = 0x45585043; // "EXPC"
+    private static final byte VERSION = 2;
+
+    private ExpenseArchiveCodec() {
+    }
+
+    /** Writes the expenses, which must be sorted by (createdAt, id) for the deltas to stay small. */
+    public static void write(List<Expense> expenses, OutputStream outputStream) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(outputStream, 64 * 1024);
+        DataOutputStream out = new DataOutputStream(gzip);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeInt(expenses.size());
+        writeLongs(out, expenses, Expense::getId);
+        writeLongs(out, expenses, expense -> expense.getCreatedAt() == null ? null : expense.getCreatedAt().getTime());
+        writeLongs(out, expenses, Expense::getAmountMinor);
+        writeStrings(out, expenses, Expense::getExternalId);
+        writeStrings(out, expenses, Expense::getCurrency);
+        writeStrings(out, expenses, Expense::getMerchant);
+        out.flush();
+        gzip.finish();
+    }
+
+    public static List<Expense> read(String userId, InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(new GZIPInputStream(inputStream, 64 * 1024));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an expense archive");
+        }
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported expense archive version " + version);
+        }
+        int rows = in.readInt();
+        Long[] ids = readLongs(in, rows);
+        Long[] createdAt = readLongs(in, rows);
+        Long[] amounts = readLongs(in, rows);
+        String[] externalIds = readStrings(in, rows);
+        String[] currencies = readStrings(in, rows);
+        String[] merchants = readStrings(in, rows);
+        List<Expense> expenses = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            expenses.add(Expense.builder()
+                    .id(ids[i])
+                    .userId(userId)
+                    .externalId(externalIds[i])
+                    .amountMinor(amounts[i])
+                    .currency(currencies[i])
+                    .merchant(merchants[i])
+                    .createdAt(createdAt[i] == null ? null : new Date(createdAt[i]))
+                    .build());
+        }
+        return expenses;
+    }
+
+    private static void writeLongs(DataOutputStream out, List<Expense> expenses, Function<Expense, Long> column) throws IOException {
+        BitSet nulls = new BitSet(expenses.size());
+        for (int i = 0; i < expenses.size(); i++) {
+            if (column.apply(expenses.get(i)) == null) {
+                nulls.set(i);
+            }
+        }
+        writeBitSet(out, nulls);
+        long previous = 0;
+        for (Expense expense : expenses) {
+            Long value = column.apply(expense);
+            if (value != null) {
+                writeVarLong(out, zigZag(value - previous));
+                previous = value;
+            }
+        }
+    }
+
+    private static Long[] readLongs(DataInputStream in, int rows) throws IOException {
+        BitSet nulls = readBitSet(in);
+        Long[] values = new Long[rows];
+        long previous = 0;
+        for (int i = 0; i < rows; i++) {
+            if (!nulls.get(i)) {
+                previous += unZigZag(readVarLong(in));
+                values[i] = previous;
+            }
+        }
+        return values;
+    }
+
+    // Dictionary first, then one varint per row: 0 for null, otherwise the dictionary position plus one
+    private static void writeStrings(DataOutputStream out, List<Expense> expenses, Function<Expense, String> column) throws IOException {
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> entries = new ArrayList<>();
+        int[] codes = new int[expenses.size()];
+        for (int i = 0; i < expenses.size(); i++) {
+            String value = column.apply(expenses.get(i));
+            if (value != null) {
+                codes[i] = dictionary.computeIfAbsent(value, key -> {
+                    entries.add(key);
+                    return entries.size();
+                });
+            }
+        }
+        writeVarLong(out, entries.size());
+        for (String entry : entries) {
+            out.writeUTF(entry);
+        }
+        for (int code : codes) {
+            writeVarLong(out, code);
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in, int rows) throws IOException {
+        String[] dictionary = new String[(int) readVarLong(in)];
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = in.readUTF();
+        }
+        String[] values = new String[rows];
+        for (int i = 0; i < rows; i++) {
+            int code = (int) readVarLong(in);
+            values[i] = code == 0 ? null : dictionary[code - 1];
+        }
+        return values;
+    }
+
+    private static void writeBitSet(DataOutputStream out, BitSet bits) throws IOException {
+        byte[] bytes = bits.toByteArray();
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static BitSet readBitSet(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[(int) readVarLong(in)];
+        in.readFully(bytes);
+        return BitSet.valueOf(bytes);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in expense archive");
+    }
+}
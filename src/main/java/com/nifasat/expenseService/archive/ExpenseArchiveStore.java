@@ -0,0 +1,196 @@
+package com.nifasat.expenseService.archive;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nifasat.expenseService.entity.Expense;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Local-disk store of archived expenses: one {@link ExpenseArchiveCodec} file per user and calendar month under
+ * {@code expense.archive.directory}. Months follow the server zone, the same calendar as the daily rollup. The months
+ * present for each user are indexed in memory so the hot read path can tell whether a range reaches the archive
+ * without touching the disk.
+ * <p>
+ * The directory must be storage every instance mounts: rows leave the shared table once archived, so an instance
+ * that cannot see the files loses them from its reads. An instance's index is re-scanned after
+ * {@code expense.archive.index-ttl} and whenever an indexed file is missing, so months archived by another instance
+ * show up within that interval.
+ */
+@Component
+public class ExpenseArchiveStore {
+
+    public static final Comparator<Expense> CHRONOLOGICAL = Comparator
+            .comparing(Expense::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Expense::getId, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private static final String SUFFIX = ".expc.gz";
+
+    private final Path root;
+    private final ZoneId zoneId = ZoneId.systemDefault();
+    private final Cache<String, NavigableSet<YearMonth>> months;
+
+    public ExpenseArchiveStore(@Value("${expense.archive.directory:archive}") String directory,
+                               @Value("${expense.archive.index-ttl:PT1M}") Duration indexTtl) {
+        this.root = Paths.get(directory);
+        this.months = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(indexTtl)
+                .build();
+    }
+
+    /** Archived months of the user, oldest first. */
+    public NavigableSet<YearMonth> archivedMonths(String userId) {
+        return Collections.unmodifiableNavigableSet(months.get(userId, this::scan));
+    }
+
+    /** Start of the first month after the user's archived months, or null when nothing is archived. */
+    public Date archivedUntil(String userId) {
+        NavigableSet<YearMonth> archived = archivedMonths(userId);
+        return archived.isEmpty() ? null : startOf(archived.last().plusMonths(1));
+    }
+
+    /** Whether a range starting at {@code startTime} includes archived expenses of the user. */
+    public boolean reaches(String userId, Date startTime) {
+        Date archivedUntil = archivedUntil(userId);
+        return archivedUntil != null && startTime.before(archivedUntil);
+    }
+
+    /** Archived expenses created within the inclusive range, in (createdAt, id) order. */
+    public List<Expense> read(String userId, Date startTime, Date endTime) {
+        NavigableSet<YearMonth> archived = archivedMonths(userId);
+        List<Expense> expenses = new ArrayList<>();
+        if (archived.isEmpty() || endTime.before(startTime)) {
+            return expenses;
+        }
+        for (YearMonth month : archived.subSet(monthOf(startTime), true, monthOf(endTime), true)) {
+            for (Expense expense : read(userId, month)) {
+                Date createdAt = expense.getCreatedAt();
+                if (createdAt != null && !createdAt.before(startTime) && !createdAt.after(endTime)) {
+                    expenses.add(expense);
+                }
+            }
+        }
+        return expenses;
+    }
+
+    public YearMonth monthOf(Date date) {
+        return YearMonth.from(date.toInstant().atZone(zoneId));
+    }
+
+    public Date startOf(YearMonth month) {
+        return Date.from(month.atDay(1).atStartOfDay(zoneId).toInstant());
+    }
+
+    public List<Expense> read(String userId, YearMonth month) {
+        Path file = fileOf(userId, month);
+        if (!Files.exists(file)) {
+            // Indexed months whose file is gone are dropped, the next access lists the directory again
+            months.invalidate(userId);
+            return new ArrayList<>();
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            return ExpenseArchiveCodec.read(userId, in);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not read expense archive " + file, ex);
+        }
+    }
+
+    /**
+     * Adds the expenses to the user's month, replacing archived rows with the same id. The file is written next to
+     * the old one and moved into place, so readers never see a partial archive.
+     */
+    public synchronized void append(String userId, YearMonth month, List<Expense> expenses) {
+        Map<Long, Expense> byId = new HashMap<>();
+        for (Expense expense : read(userId, month)) {
+            byId.put(expense.getId(), expense);
+        }
+        for (Expense expense : expenses) {
+            byId.put(expense.getId(), expense);
+        }
+        List<Expense> merged = new ArrayList<>(byId.values());
+        merged.sort(CHRONOLOGICAL);
+        write(userId, month, merged);
+    }
+
+    /**
+     * Drops the archived rows with the given ids from the user's month, rewriting its file the same way as
+     * {@link #append}. A month left empty keeps its file, so the archived range does not change. Returns how many rows
+     * were dropped.
+     */
+    public synchronized int remove(String userId, YearMonth month, Collection<Long> ids) {
+        List<Expense> kept = read(userId, month);
+        int archived = kept.size();
+        kept.removeIf(expense -> ids.contains(expense.getId()));
+        if (kept.size() < archived) {
+            write(userId, month, kept);
+        }
+        return archived - kept.size();
+    }
+
+    private void write(String userId, YearMonth month, List<Expense> expenses) {
+        Path file = fileOf(userId, month);
+        try {
+            Files.createDirectories(file.getParent());
+            Path temporary = Files.createTempFile(file.getParent(), month.toString(), ".tmp");
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                ExpenseArchiveCodec.write(expenses, out);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not write expense archive " + file, ex);
+        }
+        months.get(userId, this::scan).add(month);
+    }
+
+    private NavigableSet<YearMonth> scan(String userId) {
+        NavigableSet<YearMonth> found = new ConcurrentSkipListSet<>();
+        Path directory = root.resolve(directoryName(userId));
+        if (!Files.isDirectory(directory)) {
+            return found;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                found.add(YearMonth.parse(name.substring(0, name.length() - SUFFIX.length())));
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not list expense archive " + directory, ex);
+        }
+        return found;
+    }
+
+    private Path fileOf(String userId, YearMonth month) {
+        return root.resolve(directoryName(userId)).resolve(month + SUFFIX);
+    }
+
+    // User ids are free-form, so they are encoded into a safe directory name
+    private static String directoryName(String userId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(userId.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,50 @@
+package com.nifasat.expenseService.bucketing;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/**
+ * Maps epoch millis to the local epoch day in a zone. The offset is looked up only when an instant falls outside the
+ * window between the surrounding offset transitions, so sorted or clustered input costs one add and one division per
+ * call. Not thread-safe; use one per accumulation.
+ */
+public final class EpochDayResolver {
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private final ZoneRules rules;
+
+    private long offsetMillis;
+
+    private long validFrom = Long.MAX_VALUE;
+
+    private long validUntil = Long.MIN_VALUE;
+
+    public EpochDayResolver(ZoneId zone) {
+        this.rules = zone.getRules();
+    }
+
+    public long epochDay(long epochMillis) {
+        if (epochMillis < validFrom || epochMillis >= validUntil) {
+            refresh(epochMillis);
+        }
+        return Math.floorDiv(epochMillis + offsetMillis, MILLIS_PER_DAY);
+    }
+
+    private void refresh(long epochMillis) {
+        Instant instant = Instant.ofEpochMilli(epochMillis);
+        offsetMillis = rules.getOffset(instant).getTotalSeconds() * 1000L;
+        if (rules.isFixedOffset()) {
+            validFrom = Long.MIN_VALUE;
+            validUntil = Long.MAX_VALUE;
+            return;
+        }
+        // Latest transition at or before the instant, and the first one after it
+        ZoneOffsetTransition previous = rules.previousTransition(instant.plusMillis(1));
+        ZoneOffsetTransition next = rules.nextTransition(instant);
+        validFrom = previous == null ? Long.MIN_VALUE : previous.getInstant().toEpochMilli();
+        validUntil = next == null ? Long.MAX_VALUE : next.getInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,170 @@
+package com.nifasat.expenseService.bucketing;
+
+import com.nifasat.expenseService.dto.ExpenseCountDTO;
+import com.nifasat.expenseService.money.Amounts;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Sums expense counts and minor-unit amounts into day, ISO week, month or year buckets of a caller-supplied zone.
+ * <p>
+ * Buckets live in parallel primitive arrays indexed by {@code key - baseKey}. When the requested range spans at most
+ * {@link #MAX_PREALLOCATED_BUCKETS} buckets the arrays are sized to it up front; wider ranges (e.g. "all time" by day)
+ * start empty and grow around the keys actually seen. Results come out in chronological order without sorting.
+ * <p>
+ * Days added per currency also carry base-currency totals and native per-currency totals; the latter are only kept
+ * per (bucket, currency), never per row.
+ */
+public final class TimeBucketAccumulator {
+
+    static final int MAX_PREALLOCATED_BUCKETS = 1 << 16;
+
+    private final Timeframe timeframe;
+    private final EpochDayResolver resolver;
+    private final long firstKey;
+    private final long lastKey;
+
+    private long baseKey;
+    private long[] counts;
+    private long[] totals;
+    private double[] normalizedTotals;
+    private final Map<Long, Map<String, Long>> currencyTotals = new HashMap<>();
+    private long minKey = Long.MAX_VALUE;
+    private long maxKey = Long.MIN_VALUE;
+
+    public TimeBucketAccumulator(Timeframe timeframe, ZoneId zone, Date startTime, Date endTime) {
+        this.timeframe = timeframe;
+        this.resolver = new EpochDayResolver(zone);
+        this.firstKey = timeframe.key(resolver.epochDay(startTime.getTime()));
+        this.lastKey = Math.max(firstKey, timeframe.key(resolver.epochDay(endTime.getTime())));
+        long span = lastKey - firstKey + 1;
+        int initialSize = span <= MAX_PREALLOCATED_BUCKETS ? (int) span : 0;
+        this.baseKey = firstKey;
+        this.counts = new long[initialSize];
+        this.totals = new long[initialSize];
+    }
+
+    /** Adds one expense created at the given instant. */
+    public void add(long epochMillis, long amountMinor) {
+        addToBucket(timeframe.key(resolver.epochDay(epochMillis)), 1, amountMinor);
+    }
+
+    /** Adds a pre-aggregated day, e.g. a rollup row whose day is already local to this accumulator's zone. */
+    public void addDay(long epochDay, long count, long totalAmountMinor) {
+        addToBucket(timeframe.key(epochDay), count, totalAmountMinor);
+    }
+
+    /**
+     * Adds a pre-aggregated day of one currency together with its total converted into the base currency. Once this
+     * is used every bucket reports a normalized total, so all days should then be added this way.
+     */
+    public void addDay(long epochDay, long count, long totalAmountMinor, String currency, double normalizedAmount) {
+        long key = timeframe.key(epochDay);
+        addToBucket(key, count, totalAmountMinor);
+        if (normalizedTotals == null) {
+            normalizedTotals = new double[counts.length];
+        }
+        normalizedTotals[(int) (key - baseKey)] += normalizedAmount;
+        currencyTotals.computeIfAbsent(key, bucket -> new TreeMap<>()).merge(currency, totalAmountMinor, Long::sum);
+    }
+
+    /**
+     * Buckets in chronological order. With {@code fillGaps} every bucket of the requested range is returned, empty
+     * ones as zero; for ranges too wide to preallocate the zero-filling is limited to the span that has data.
+     */
+    public List<ExpenseCountDTO> toCounts(boolean fillGaps) {
+        if (minKey > maxKey && !fillGaps) {
+            return new ArrayList<>();
+        }
+        long from;
+        long to;
+        if (fillGaps && lastKey - firstKey < MAX_PREALLOCATED_BUCKETS) {
+            from = firstKey;
+            to = lastKey;
+        } else {
+            from = minKey;
+            to = maxKey;
+        }
+        List<ExpenseCountDTO> buckets = new ArrayList<>();
+        for (long key = from; key <= to; key++) {
+            long index = key - baseKey;
+            boolean present = index >= 0 && index < counts.length;
+            long count = present ? counts[(int) index] : 0;
+            if (count > 0 || fillGaps) {
+                long total = present ? totals[(int) index] : 0;
+                if (normalizedTotals == null) {
+                    buckets.add(new ExpenseCountDTO(timeframe.label(key), (int) count, total));
+                } else {
+                    double normalized = present ? normalizedTotals[(int) index] : 0.0;
+                    buckets.add(new ExpenseCountDTO(timeframe.label(key), (int) count, Amounts.toMajor(total), total,
+                            Double.isNaN(normalized) ? null : normalized, toMajor(currencyTotals.get(key))));
+                }
+            }
+        }
+        return buckets;
+    }
+
+    private static Map<String, Double> toMajor(Map<String, Long> totalsMinor) {
+        Map<String, Double> totals = new LinkedHashMap<>();
+        if (totalsMinor != null) {
+            totalsMinor.forEach((currency, totalMinor) -> totals.put(currency, Amounts.toMajor(totalMinor)));
+        }
+        return totals;
+    }
+
+    private void addToBucket(long key, long count, long totalAmountMinor) {
+        long index = key - baseKey;
+        if (index < 0 || index >= counts.length) {
+            grow(key);
+            index = key - baseKey;
+        }
+        counts[(int) index] += count;
+        totals[(int) index] += totalAmountMinor;
+        if (key < minKey) {
+            minKey = key;
+        }
+        if (key > maxKey) {
+            maxKey = key;
+        }
+    }
+
+    private void grow(long key) {
+        if (counts.length == 0) {
+            baseKey = key;
+            counts = new long[16];
+            totals = new long[16];
+            if (normalizedTotals != null) {
+                normalizedTotals = new double[16];
+            }
+            return;
+        }
+        long limit = baseKey + counts.length;
+        long required = Math.max(limit, key + 1) - Math.min(baseKey, key);
+        long size = Math.max(required, (long) counts.length * 2);
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many " + timeframe.name().toLowerCase() + " buckets: " + required);
+        }
+        // Keep the existing buckets at the end that did not need to move and grow towards the new key
+        long newBase = key < baseKey ? limit - size : baseKey;
+        long[] newCounts = new long[(int) size];
+        long[] newTotals = new long[(int) size];
+        int shift = (int) (baseKey - newBase);
+        System.arraycopy(counts, 0, newCounts, shift, counts.length);
+        System.arraycopy(totals, 0, newTotals, shift, totals.length);
+        if (normalizedTotals != null) {
+            double[] newNormalizedTotals = new double[(int) size];
+            System.arraycopy(normalizedTotals, 0, newNormalizedTotals, shift, normalizedTotals.length);
+            normalizedTotals = newNormalizedTotals;
+        }
+        baseKey = newBase;
+        counts = newCounts;
+        totals = newTotals;
+    }
+}
@@ -0,0 +1,91 @@
+package com.nifasat.expenseService.bucketing;
+
+import java.time.LocalDate;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.temporal.IsoFields;
+import java.util.Locale;
+
+/**
+ * Bucket granularity of the count endpoint. Keys are consecutive longs derived from the epoch day with integer
+ * arithmetic only, so buckets can index primitive arrays and sort numerically; labels are produced once per bucket.
+ */
+public enum Timeframe {
+    DAY {
+        @Override
+        public long key(long epochDay) {
+            return epochDay;
+        }
+
+        @Override
+        public String label(long key) {
+            return LocalDate.ofEpochDay(key).toString();
+        }
+    },
+    /** ISO-8601 weeks: Monday to Sunday, week 1 holds the year's first Thursday. Labelled {@code 2024-W03}. */
+    WEEK {
+        @Override
+        public long key(long epochDay) {
+            // 1970-01-01 was a Thursday, so the Monday of week 0 is epoch day -3
+            return Math.floorDiv(epochDay + 3, 7);
+        }
+
+        @Override
+        public String label(long key) {
+            LocalDate monday = LocalDate.ofEpochDay(key * 7 - 3);
+            return String.format("%04d-W%02d", monday.get(IsoFields.WEEK_BASED_YEAR),
+                    monday.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+        }
+    },
+    MONTH {
+        @Override
+        public long key(long epochDay) {
+            return civilYearMonth(epochDay);
+        }
+
+        @Override
+        public String label(long key) {
+            return YearMonth.of((int) Math.floorDiv(key, 12), (int) Math.floorMod(key, 12) + 1).toString();
+        }
+    },
+    YEAR {
+        @Override
+        public long key(long epochDay) {
+            return Math.floorDiv(civilYearMonth(epochDay), 12);
+        }
+
+        @Override
+        public String label(long key) {
+            return Year.of((int) key).toString();
+        }
+    };
+
+    /** Bucket containing the given local epoch day. */
+    public abstract long key(long epochDay);
+
+    public abstract String label(long key);
+
+    public static Timeframe parse(String timeframe) {
+        try {
+            return valueOf(timeframe.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException | NullPointerException ex) {
+            throw new IllegalArgumentException("Invalid timeframe: " + timeframe);
+        }
+    }
+
+    /**
+     * {@code year * 12 + (month - 1)} of a proleptic Gregorian epoch day, using the era-based civil-from-days
+     * algorithm (H. Hinnant) so no {@link LocalDate} is allocated per expense.
+     */
+    static long civilYearMonth(long epochDay) {
+        long shifted = epochDay + 719_468; // days since 0000-03-01
+        long era = Math.floorDiv(shifted, 146_097);
+        long dayOfEra = shifted - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1_460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153; // 0 = March
+        long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 12 + month - 1;
+    }
+}
@@ -0,0 +1,95 @@
+package com.nifasat.expenseService.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bounded read-through cache for the per-user analytics results. Entries are keyed by user, result kind and the
+ * requested time range aligned inward to {@code expense.cache.summary.range-granularity}, so dashboards asking for
+ * "now" on every load share an entry. The result is computed for the aligned range: it may leave out expenses of the
+ * partial granule at either edge, but never covers an expense outside the range the client asked for. A range shorter
+ * than one granule is used as it is.
+ * <p>
+ * Cached values are never handed out; every caller gets its own copy, so no caller can change what the next one reads.
+ * <p>
+ * Invalidation is O(1): every user has a generation number that is part of the key, and a write moves the user to a
+ * fresh generation so older entries are never read again and simply age out.
+ */
+@Component
+public class ExpenseSummaryCache {
+
+    private final Cache<SummaryKey, Object> results;
+    private final Cache<String, Long> generations;
+    private final AtomicLong generationSequence = new AtomicLong();
+    private final long granularityMillis;
+
+    public ExpenseSummaryCache(MeterRegistry meterRegistry,
+                               @Value("${expense.cache.summary.max-size:10000}") long maxSize,
+                               @Value("${expense.cache.summary.ttl:PT5M}") Duration ttl,
+                               @Value("${expense.cache.summary.range-granularity:PT1M}") Duration rangeGranularity) {
+        this.results = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        // Losing a generation is safe: the user gets a new one and misses once
+        this.generations = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(ttl)
+                .build();
+        this.granularityMillis = Math.max(1, rangeGranularity.toMillis());
+        CaffeineCacheMetrics.monitor(meterRegistry, results, "expenseSummary");
+    }
+
+    /**
+     * Returns a {@code copy} of the cached result for the aligned range, computing it with {@code loader} on a miss.
+     * The loader receives the aligned, inclusive range so the cached value is exactly the result for that key.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String userId, String kind, Date startTime, Date endTime, BiFunction<Date, Date, T> loader,
+                     UnaryOperator<T> copy){
+        long start = Math.floorDiv(startTime.getTime() + granularityMillis - 1, granularityMillis) * granularityMillis;
+        long end = Math.floorDiv(endTime.getTime() + 1, granularityMillis) * granularityMillis - 1;
+        if(start > end){
+            start = startTime.getTime();
+            end = endTime.getTime();
+        }
+        SummaryKey key = new SummaryKey(userId, generationOf(userId), kind, start, end);
+        return copy.apply((T) results.get(key, k -> loader.apply(new Date(k.start()), new Date(k.end()))));
+    }
+
+    /**
+     * Drops every cached result of {@code userId}, again after the surrounding transaction commits so that a read
+     * racing the write cannot cache pre-commit data under the new generation.
+     */
+    public void invalidate(String userId){
+        generations.put(userId, generationSequence.incrementAndGet());
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    generations.put(userId, generationSequence.incrementAndGet());
+                }
+            });
+        }
+    }
+
+    private long generationOf(String userId){
+        return generations.get(userId, k -> generationSequence.incrementAndGet());
+    }
+
+    private record SummaryKey(String userId, long generation, String kind, long start, long end) {
+    }
+}
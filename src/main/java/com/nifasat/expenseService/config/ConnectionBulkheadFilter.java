@@ -0,0 +1,97 @@
+package com.nifasat.expenseService.config;
+
+import io.micrometer.core.instrument.Metrics;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the number of requests that may be in flight at once. With virtual threads Tomcat no longer limits
+ * concurrency, so without this every blocked request would queue on HikariCP and time out there instead.
+ * Requests that cannot get a permit within the timeout are shed with 503 and a Retry-After hint.
+ * <p>
+ * A request that goes async, like the streaming export, keeps its permit until the async work completes rather than
+ * until the filter chain returns. The live feed is exempt: its connections idle for minutes and use no database.
+ */
+public class ConnectionBulkheadFilter extends OncePerRequestFilter {
+
+    private static final String LIVE_FEED_PATH = "/expense/v1/live";
+
+    private final Semaphore permits;
+
+    private final long acquireTimeoutMillis;
+
+    public ConnectionBulkheadFilter(int maxConcurrentRequests, Duration acquireTimeout) {
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+        this.acquireTimeoutMillis = acquireTimeout.toMillis();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            Metrics.counter("expense.http.bulkhead.rejected").increment();
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+            return;
+        }
+        boolean releaseOnCompletion = false;
+        try {
+            filterChain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleaseOnCompletion());
+                releaseOnCompletion = true;
+            }
+        } finally {
+            if (!releaseOnCompletion) {
+                permits.release();
+            }
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return LIVE_FEED_PATH.equals(request.getServletPath());
+    }
+
+    // onComplete also follows a timeout or an error, so it is the single place the permit is returned
+    private final class ReleaseOnCompletion implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            permits.release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Listeners are dropped when async is restarted, so follow the new cycle
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.nifasat.expenseService.config;
+
+import com.nifasat.expenseService.fx.FileFxRateProvider;
+import com.nifasat.expenseService.fx.FxRateProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+
+@Configuration
+public class FxConfig {
+
+    /** Default rate source; define another {@link FxRateProvider} bean to load rates from elsewhere. */
+    @Bean
+    @ConditionalOnMissingBean(FxRateProvider.class)
+    public FxRateProvider fileFxRateProvider(@Value("${expense.fx.rates-file:fx-rates.csv}") String ratesFile) {
+        return new FileFxRateProvider(Paths.get(ratesFile));
+    }
+}
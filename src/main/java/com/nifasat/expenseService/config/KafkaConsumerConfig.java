@@ -0,0 +1,51 @@
+package com.nifasat.expenseService.config;
+
+import com.nifasat.expenseService.dto.ExpenseDto;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.support.serializer.DelegatingByTypeSerializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Configuration
+public class KafkaConsumerConfig {
+
+    @Value("${spring.kafka.topic.dead-letter-name}")
+    private String deadLetterTopic;
+
+    @Bean
+    public KafkaTemplate<String, Object> deadLetterKafkaTemplate(KafkaProperties kafkaProperties) {
+        // Poison records arrive either as raw bytes (deserialization failures) or as an ExpenseDto (persist failures)
+        Map<Class<?>, Serializer<?>> valueSerializers = new LinkedHashMap<>();
+        valueSerializers.put(byte[].class, new ByteArraySerializer());
+        valueSerializers.put(ExpenseDto.class, new JsonSerializer<ExpenseDto>());
+        DefaultKafkaProducerFactory<String, Object> producerFactory = new DefaultKafkaProducerFactory<>(
+                kafkaProperties.buildProducerProperties(null), new StringSerializer(),
+                new DelegatingByTypeSerializer(valueSerializers));
+        return new KafkaTemplate<>(producerFactory);
+    }
+
+    /**
+     * Picked up by the auto-configured batch listener container. A {@code BatchListenerFailedException} commits the
+     * records before the failed one, sends the failed record to the dead-letter topic and redelivers the rest.
+     */
+    @Bean
+    public DefaultErrorHandler expenseErrorHandler(KafkaTemplate<String, Object> deadLetterKafkaTemplate) {
+        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(deadLetterKafkaTemplate,
+                (record, ex) -> new TopicPartition(deadLetterTopic, -1));
+        return new DefaultErrorHandler(recoverer, new FixedBackOff(1000L, 2L));
+    }
+}
@@ -0,0 +1,29 @@
+package com.nifasat.expenseService.config;
+
+import com.nifasat.expenseService.merchant.MerchantNormalizer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+public class MerchantConfig {
+
+    /** Aliases are given as comma-separated {@code name=Canonical Name} pairs. */
+    @Bean
+    public MerchantNormalizer merchantNormalizer(@Value("${expense.merchant.strip-suffixes:}") List<String> suffixes,
+                                                 @Value("${expense.merchant.aliases:}") List<String> aliases) {
+        Map<String, String> aliasMap = new LinkedHashMap<>();
+        for (String alias : aliases) {
+            int separator = alias.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected name=Canonical Name in expense.merchant.aliases but got " + alias);
+            }
+            aliasMap.put(alias.substring(0, separator), alias.substring(separator + 1));
+        }
+        return new MerchantNormalizer(suffixes, aliasMap);
+    }
+}
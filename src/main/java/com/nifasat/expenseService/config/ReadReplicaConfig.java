@@ -0,0 +1,79 @@
+package com.nifasat.expenseService.config;
+
+import com.nifasat.expenseService.datasource.ReadRoutingInterceptor;
+import com.nifasat.expenseService.datasource.ReadYourWritesTracker;
+import com.nifasat.expenseService.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Active with {@code expense.read-replicas.enabled=true}. Replaces Boot's single datasource with a
+ * {@link LazyConnectionDataSourceProxy} that defers fetching a connection until the first statement, by which point
+ * the transaction's read-only flag is known: read-write work goes to {@code spring.datasource.url}, read-only
+ * transactions to {@link ReplicaRoutingDataSource}. Replicas ({@code expense.read-replicas.urls}, comma-separated)
+ * share the primary's credentials and pool size.
+ */
+@Configuration
+@ConditionalOnProperty(name = "expense.read-replicas.enabled", havingValue = "true")
+public class ReadReplicaConfig implements WebMvcConfigurer {
+
+    @Value("${expense.read-replicas.urls}")
+    private String[] replicaUrls;
+
+    @Value("${expense.read-replicas.connection-timeout:PT1S}")
+    private Duration replicaConnectionTimeout;
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+                                                             DataSourceProperties dataSourceProperties,
+                                                             ReadYourWritesTracker readYourWritesTracker) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < replicaUrls.length; i++) {
+            String name = "replica-" + i;
+            HikariDataSource replica = dataSourceProperties.initializeDataSourceBuilder()
+                    .type(HikariDataSource.class)
+                    .url(replicaUrls[i].trim())
+                    .build();
+            replica.setPoolName(name);
+            replica.setMaximumPoolSize(primaryDataSource.getMaximumPoolSize());
+            // Fail over to the primary quickly instead of waiting out the primary's connection timeout
+            replica.setConnectionTimeout(replicaConnectionTimeout.toMillis());
+            replica.setReadOnly(true);
+            replicas.put(name, replica);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, readYourWritesTracker);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaRoutingDataSource replicaRoutingDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        dataSource.setReadOnlyDataSource(replicaRoutingDataSource);
+        return dataSource;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ReadRoutingInterceptor()).addPathPatterns("/expense/**");
+    }
+}
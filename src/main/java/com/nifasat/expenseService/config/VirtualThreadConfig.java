@@ -0,0 +1,38 @@
+package com.nifasat.expenseService.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Active when {@code spring.threads.virtual.enabled=true} (requires a Java 21 runtime). Boot then runs Tomcat
+ * requests, the Kafka listener container and {@code @Async}/{@code @Scheduled} work on virtual threads; this
+ * configuration adds the bulkhead that keeps those threads from stampeding the connection pool.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    @Value("${spring.datasource.hikari.maximum-pool-size}")
+    private int maximumPoolSize;
+
+    @Value("${expense.virtual-threads.requests-per-connection}")
+    private int requestsPerConnection;
+
+    @Value("${expense.virtual-threads.acquire-timeout}")
+    private Duration acquireTimeout;
+
+    @Bean
+    public FilterRegistrationBean<ConnectionBulkheadFilter> connectionBulkheadFilter() {
+        // Allow a little more concurrency than connections so requests that are serializing or waiting on
+        // the client keep the pool busy, while the rest wait here rather than inside Hikari
+        FilterRegistrationBean<ConnectionBulkheadFilter> registration = new FilterRegistrationBean<>(
+                new ConnectionBulkheadFilter(maximumPoolSize * requestsPerConnection, acquireTimeout));
+        registration.addUrlPatterns("/expense/*");
+        return registration;
+    }
+}
@@ -2,22 +2,206 @@ package com.nifasat.expenseService.consumer;
 
 import com.nifasat.expenseService.dto.ExpenseDto;
 import com.nifasat.expenseService.service.ExpenseService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.logging.log4j.util.Strings;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records that carry neither an externalId nor a createdAt get an externalId derived from their topic, partition and
+ * offset, so a redelivery overwrites the expense it wrote before instead of adding a second one.
+ * <p>
+ * Besides the meters below, consumer lag ({@code kafka.consumer.fetch.manager.records.lag.max}) is published by
+ * the Kafka client metrics that Boot binds to every consumer factory.
+ * <p>
+ * A failed write is replayed one record at a time to find the record that fails, which is then reported through
+ * {@code BatchListenerFailedException}: the error handler commits the records before it, retries and dead-letters
+ * only that record, and redelivers the rest instead of dead-lettering the whole poll.
+ * <p>
+ * With {@code expense.consumer.parallelism} above 1, each polled batch is split into lanes by userId and the lanes
+ * are persisted concurrently, each in its own transaction, so one slow user or a stalled write no longer holds up
+ * every other user on the partition. A user's records always share a lane and keep their order. If any lane fails,
+ * the batch fails at the lowest failed index: the error handler commits only the contiguous prefix before it, and
+ * the records redelivered after it that other lanes had already written are absorbed by the idempotent upsert.
+ */
 @Service
 public class ExpenseConsumer {
     @Autowired
     private ExpenseService expenseService;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${expense.consumer.parallelism:1}")
+    private int parallelism;
+    @Value("${expense.consumer.queue-depth:16}")
+    private int queueDepth;
+
+    private Timer persistTimer;
+    private DistributionSummary batchSize;
+    private Counter poisonRecords;
+    private Counter persistFailures;
+    private final AtomicInteger inFlightRecords = new AtomicInteger();
+    private ThreadPoolExecutor laneExecutor;
+
+    @PostConstruct
+    void registerMeters() {
+        persistTimer = Timer.builder("expense.consumer.persist")
+                .description("Time to persist one polled batch")
+                .register(meterRegistry);
+        batchSize = DistributionSummary.builder("expense.consumer.batch.size")
+                .baseUnit("records")
+                .register(meterRegistry);
+        poisonRecords = meterRegistry.counter("expense.consumer.failures", "reason", "deserialization");
+        persistFailures = meterRegistry.counter("expense.consumer.failures", "reason", "persist");
+        if (parallelism > 1) {
+            // A full queue runs the lane on the listener thread, which slows polling instead of rejecting work
+            laneExecutor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueDepth), new ThreadPoolExecutor.CallerRunsPolicy());
+            meterRegistry.gauge("expense.consumer.in-flight", inFlightRecords);
+            meterRegistry.gauge("expense.consumer.lanes.queued", laneExecutor, executor -> executor.getQueue().size());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (laneExecutor != null) {
+            laneExecutor.shutdown();
+        }
+    }
+
     @KafkaListener(topics="${spring.kafka.topic.name}", groupId = "${spring.kafka.consumer.group-id}")
-    public void listener(ExpenseDto expenseDto){
-        try{
-            expenseService.createExpense(expenseDto);
-        }catch (Exception ex){
-            ex.printStackTrace();
+    public void listener(List<ConsumerRecord<String, ExpenseDto>> records){
+        batchSize.record(records.size());
+        LaneFailure failure = persistTimer.record(() -> laneExecutor != null && records.size() > 1
+                ? persistInLanes(records) : persistLane(records, indexesOf(records)));
+        if (failure != null) {
+            ConsumerRecord<String, ExpenseDto> record = records.get(failure.index());
+            if (failure.cause() == null) {
+                throw new BatchListenerFailedException("Expense record could not be deserialized", record);
+            }
+            throw new BatchListenerFailedException("Expense record could not be persisted", failure.cause(), record);
+        }
+    }
+
+    private static List<Integer> indexesOf(List<ConsumerRecord<String, ExpenseDto>> records) {
+        List<Integer> indexes = new ArrayList<>(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            indexes.add(i);
+        }
+        return indexes;
+    }
+
+    /** Persists the lanes concurrently and returns the failure with the lowest index, or null. */
+    private LaneFailure persistInLanes(List<ConsumerRecord<String, ExpenseDto>> records) {
+        List<List<Integer>> lanes = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            lanes.add(new ArrayList<>());
+        }
+        for (int i = 0; i < records.size(); i++) {
+            lanes.get(Math.floorMod(Objects.hashCode(userIdOf(records.get(i))), parallelism)).add(i);
         }
+
+        List<CompletableFuture<LaneFailure>> futures = new ArrayList<>(parallelism);
+        for (List<Integer> lane : lanes) {
+            if (!lane.isEmpty()) {
+                inFlightRecords.addAndGet(lane.size());
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return persistLane(records, lane);
+                    } finally {
+                        inFlightRecords.addAndGet(-lane.size());
+                    }
+                }, laneExecutor));
+            }
+        }
+
+        LaneFailure first = null;
+        for (CompletableFuture<LaneFailure> future : futures) {
+            LaneFailure failure = future.join();
+            if (failure != null && (first == null || failure.index() < first.index())) {
+                first = failure;
+            }
+        }
+        return first;
+    }
+
+    /** Persists one lane in order and returns where it stopped, or null when every record was written. */
+    private LaneFailure persistLane(List<ConsumerRecord<String, ExpenseDto>> records, List<Integer> lane) {
+        List<ExpenseDto> expenseDtos = new ArrayList<>(lane.size());
+        List<Integer> indexes = new ArrayList<>(lane.size());
+        for (int index : lane) {
+            ConsumerRecord<String, ExpenseDto> record = records.get(index);
+            ExpenseDto expenseDto = record.value();
+            if (Objects.isNull(expenseDto)) {
+                poisonRecords.increment();
+                LaneFailure failure = persistChunk(expenseDtos, indexes);
+                return failure != null ? failure : new LaneFailure(index, null);
+            }
+            if (Strings.isBlank(expenseDto.getExternalId()) && Objects.isNull(expenseDto.getCreatedAt())) {
+                expenseDto.setExternalId(externalIdOf(record));
+            }
+            expenseDtos.add(expenseDto);
+            indexes.add(index);
+        }
+        return persistChunk(expenseDtos, indexes);
+    }
+
+    private LaneFailure persistChunk(List<ExpenseDto> expenseDtos, List<Integer> indexes) {
+        if (expenseDtos.isEmpty()) {
+            return null;
+        }
+        try {
+            expenseService.createExpenses(expenseDtos);
+            return null;
+        } catch (RuntimeException ex) {
+            persistFailures.increment();
+        }
+        // The chunk was rolled back; replay it one record at a time to find the record that fails
+        for (int i = 0; i < expenseDtos.size(); i++) {
+            try {
+                expenseService.createExpenses(List.of(expenseDtos.get(i)));
+            } catch (RuntimeException ex) {
+                return new LaneFailure(indexes.get(i), ex);
+            }
+        }
+        return null;
+    }
+
+    // Nothing in such a record identifies it, but its position in the log does, and a redelivery keeps that position
+    private static String externalIdOf(ConsumerRecord<String, ExpenseDto> record) {
+        String position = record.topic() + '\u0000' + record.partition() + '\u0000' + record.offset();
+        return UUID.nameUUIDFromBytes(position.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    private static String userIdOf(ConsumerRecord<String, ExpenseDto> record) {
+        // Producers key records by userId, so poison records land in the lane of the user they belong to
+        return Objects.nonNull(record.value()) && Objects.nonNull(record.value().getUserId())
+                ? record.value().getUserId() : record.key();
+    }
+
+    /** Lowest failed index of a lane; {@code cause} is null for a record that could not be deserialized. */
+    private record LaneFailure(int index, RuntimeException cause) {
     }
 
 }
@@ -1,17 +1,26 @@
 package com.nifasat.expenseService.controller;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nifasat.expenseService.dto.ExpenseBatchResultDTO;
 import com.nifasat.expenseService.dto.ExpenseCountDTO;
 import com.nifasat.expenseService.dto.ExpenseDto;
+import com.nifasat.expenseService.dto.ExpensePage;
 import com.nifasat.expenseService.dto.MerchantSummaryDTO;
 import com.nifasat.expenseService.entity.Expense;
+import com.nifasat.expenseService.live.ExpenseLiveFeed;
 import com.nifasat.expenseService.service.ExpenseService;
 import jakarta.websocket.server.PathParam;
+import lombok.extern.slf4j.Slf4j;
 import org.antlr.v4.runtime.misc.NotNull;
 import org.hibernate.annotations.NotFound;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -20,38 +29,68 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.TimeZone;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+@Slf4j
 @RestController
 public class ExpenseController {
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     @Autowired
     private  ExpenseService expenseService;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private ExpenseLiveFeed expenseLiveFeed;
+    @Value("${expense.batch.max-size:5000}")
+    private int maxBatchSize;
 
     @GetMapping("/expense/v1/all")
-    public ResponseEntity<List<ExpenseDto>> getExpenses(@RequestParam("user_id") @NotNull String userId){
+    public ResponseEntity<List<ExpenseDto>> getExpenses(@RequestParam("user_id") @NotNull String userId,
+                                                        @RequestParam(value = "cursor", required = false) String cursor,
+                                                        @RequestParam(value = "page_size", required = false) Integer pageSize){
         try {
+            if(Objects.nonNull(cursor) || Objects.nonNull(pageSize)){
+                return toPageResponse(expenseService.getExpensePage(userId, null, null, null, cursor, pageSize));
+            }
             List<ExpenseDto> expenseDtos = expenseService.getExpenses(userId);
             return new ResponseEntity<>(expenseDtos, HttpStatus.OK);
+        } catch (IllegalArgumentException ex){
+            return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
         } catch (Exception ex){
             return new ResponseEntity<>(null, HttpStatus.NOT_FOUND);
         }
     }
     @GetMapping("/expense/v1/rangeBasedExpense")
     public ResponseEntity<List<ExpenseDto>> getRangeExpenses(@RequestParam("user_id") @NotNull String userId, @RequestParam("start_date") @NotNull
-                                                             Long startDate, @RequestParam("end_date") @NotNull Long endDate){
+                                                             Long startDate, @RequestParam("end_date") @NotNull Long endDate,
+                                                             @RequestParam(value = "cursor", required = false) String cursor,
+                                                             @RequestParam(value = "page_size", required = false) Integer pageSize){
         try {
+            if(Objects.nonNull(cursor) || Objects.nonNull(pageSize)){
+                return toPageResponse(expenseService.getExpensePage(userId, null, startDate, endDate, cursor, pageSize));
+            }
             List<ExpenseDto> expenseDtos = expenseService.getTimeBasedExpense(userId, startDate, endDate);
             return new ResponseEntity<>(expenseDtos, HttpStatus.OK);
+        } catch (IllegalArgumentException ex){
+            return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
         } catch (Exception ex){
             return new ResponseEntity<>(null, HttpStatus.NOT_FOUND);
         }
@@ -59,29 +98,76 @@ public class ExpenseController {
 
     @GetMapping("/expense/v1/merchant/rangeBasedExpense")
     public ResponseEntity<List<ExpenseDto>> getMerchantRangeExpenses(@RequestParam("user_id") @NotNull String userId, @RequestParam("merchant") @NotNull String merchant, @RequestParam("start_date") @NotNull
-    Long startDate, @RequestParam("end_date") @NotNull Long endDate){
+    Long startDate, @RequestParam("end_date") @NotNull Long endDate, @RequestParam(value = "cursor", required = false) String cursor,
+    @RequestParam(value = "page_size", required = false) Integer pageSize){
         try {
+            if(Objects.nonNull(cursor) || Objects.nonNull(pageSize)){
+                return toPageResponse(expenseService.getExpensePage(userId, merchant, startDate, endDate, cursor, pageSize));
+            }
             List<ExpenseDto> expenseDtos = expenseService.getTimeAndMerchantBasedExpense(userId, merchant, startDate, endDate);
             return new ResponseEntity<>(expenseDtos, HttpStatus.OK);
+        } catch (IllegalArgumentException ex){
+            return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
         } catch (Exception ex){
             return new ResponseEntity<>(null, HttpStatus.NOT_FOUND);
         }
     }
 
+    // The page body stays a plain list so existing clients keep working; the next cursor travels in a header
+    private ResponseEntity<List<ExpenseDto>> toPageResponse(ExpensePage page){
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if(Objects.nonNull(page.getNextCursor())){
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getExpenses());
+    }
+
+    @GetMapping("/expense/v1/export")
+    public ResponseEntity<StreamingResponseBody> exportExpenses(@RequestParam("user_id") @NotNull String userId,
+                                                                @RequestParam(value = "format", defaultValue = "ndjson") String format,
+                                                                @RequestParam(value = "start_date", required = false) Long startDate,
+                                                                @RequestParam(value = "end_date", required = false) Long endDate){
+        MediaType contentType = "csv".equalsIgnoreCase(format) ? new MediaType("text", "csv") : MediaType.APPLICATION_NDJSON;
+        StreamingResponseBody body = outputStream -> expenseService.exportExpenses(userId, startDate, endDate, format, outputStream);
+        return ResponseEntity.ok().contentType(contentType).body(body);
+    }
+
+    /**
+     * Server-sent events: {@code expense} for every committed add or update, {@code totals} with today's and this
+     * month's running totals, and {@code resync} when the client fell too far behind and should refetch.
+     */
+    @GetMapping(value = "/expense/v1/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> liveExpenses(@RequestParam("user_id") @NotNull String userId){
+        try {
+            return ResponseEntity.ok(expenseLiveFeed.subscribe(userId));
+        } catch (IllegalStateException ex){
+            return new ResponseEntity<>(null, HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
     @PostMapping(path="/expense/v1/addExpense")
     public ResponseEntity<Boolean> addExpenses(@RequestHeader(value = "X-User-Id") @NotNull String userId, @RequestBody ExpenseDto
                                                expenseDto){
         try{
             expenseDto.setUserId(userId);
             return new ResponseEntity<>(expenseService.createExpense(expenseDto), HttpStatus.OK);
-        }catch (Exception ex){
+        }catch (DataIntegrityViolationException | IllegalArgumentException ex){
             return new ResponseEntity<>(false, HttpStatus.BAD_REQUEST);
+        }catch (Exception ex){
+            log.error("Failed to add expense for user {}", userId, ex);
+            return new ResponseEntity<>(false, HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
 
     @DeleteMapping(path="/expense/v1/deleteExpense")
     public ResponseEntity<String> deleteExpense(@RequestParam("user_id") @NotNull String userId, @RequestBody ExpenseDto expenseDto){
-        Integer done = expenseService.deleteExpense(userId, expenseDto);
+        Integer done;
+        try{
+            done = expenseService.deleteExpense(userId, expenseDto);
+        }catch (Exception ex){
+            log.error("Failed to delete expense {} of user {}", expenseDto.getExternalId(), userId, ex);
+            return ResponseEntity.internalServerError().body("Error occured");
+        }
         if(done>0){
             return ResponseEntity.ok("Deleted");
         }else{
@@ -89,20 +175,75 @@ public class ExpenseController {
         }
     }
 
+    @PostMapping(path="/expense/v1/batch/addExpense", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<ExpenseBatchResultDTO>> addExpenseBatch(@RequestHeader(value = "X-User-Id") @NotNull String userId,
+                                                                       @RequestBody List<ExpenseDto> expenseDtos){
+        return runBatch(expenseDtos, batch -> expenseService.addExpenseBatch(userId, batch));
+    }
+
+    @PostMapping(path="/expense/v1/batch/addExpense", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<List<ExpenseBatchResultDTO>> addExpenseBatchNdjson(@RequestHeader(value = "X-User-Id") @NotNull String userId,
+                                                                             InputStream body) throws IOException {
+        return runBatch(readNdjson(body), batch -> expenseService.addExpenseBatch(userId, batch));
+    }
+
+    @PostMapping(path="/expense/v1/batch/updateExpense", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<ExpenseBatchResultDTO>> updateExpenseBatch(@RequestHeader(value = "X-User-Id") @NotNull String userId,
+                                                                          @RequestBody List<ExpenseDto> expenseDtos){
+        return runBatch(expenseDtos, batch -> expenseService.upsertExpenseBatch(userId, batch));
+    }
+
+    @PostMapping(path="/expense/v1/batch/updateExpense", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<List<ExpenseBatchResultDTO>> updateExpenseBatchNdjson(@RequestHeader(value = "X-User-Id") @NotNull String userId,
+                                                                                InputStream body) throws IOException {
+        return runBatch(readNdjson(body), batch -> expenseService.upsertExpenseBatch(userId, batch));
+    }
+
+    @DeleteMapping(path="/expense/v1/batch/deleteExpense")
+    public ResponseEntity<List<ExpenseBatchResultDTO>> deleteExpenseBatch(@RequestParam("user_id") @NotNull String userId,
+                                                                          @RequestBody List<ExpenseDto> expenseDtos){
+        return runBatch(expenseDtos, batch -> expenseService.deleteExpenseBatch(userId, batch));
+    }
+
+    private List<ExpenseDto> readNdjson(InputStream body) throws IOException {
+        try (MappingIterator<ExpenseDto> iterator = objectMapper.readerFor(ExpenseDto.class).readValues(body)) {
+            return iterator.readAll();
+        }
+    }
+
+    private ResponseEntity<List<ExpenseBatchResultDTO>> runBatch(List<ExpenseDto> expenseDtos,
+                                                                 Function<List<ExpenseDto>, List<ExpenseBatchResultDTO>> operation){
+        if(expenseDtos.size() > maxBatchSize){
+            return new ResponseEntity<>(null, HttpStatus.PAYLOAD_TOO_LARGE);
+        }
+        try{
+            return ResponseEntity.ok(operation.apply(expenseDtos));
+        }catch (Exception ex){
+            return new ResponseEntity<>(ExpenseBatchResultDTO.allFailed(expenseDtos, ex), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     @GetMapping("/expense/v1/count")
     public ResponseEntity<List<ExpenseCountDTO>> getExpenseCountsByTimeframe(
             @RequestParam("user_id") String userId,
             @RequestParam("time_frame") String timeframe,
             @RequestParam("start_date") Long startDate,
-            @RequestParam("end_date") Long endDate) {
+            @RequestParam("end_date") Long endDate,
+            @RequestParam(value = "zone", required = false) String zone,
+            @RequestParam(value = "fill_gaps", defaultValue = "false") boolean fillGaps) {
 
         Date startTime = new Date(startDate);
         Date endTime = new Date(endDate);
 
-        List<ExpenseCountDTO> expenses =
-                expenseService.getExpenseCountsByTimeframe(userId, timeframe, startTime, endTime);
-        return Optional.ofNullable(expenses).map(expenseCountDTOS -> ResponseEntity.ok(expenseCountDTOS))
-                .orElse(ResponseEntity.badRequest().build());
+        try {
+            // Without a zone, buckets follow the server's calendar as before
+            List<ExpenseCountDTO> expenses = expenseService.getExpenseCountsByTimeframe(userId, timeframe, startTime, endTime,
+                    zone == null ? null : ZoneId.of(zone), fillGaps);
+            return Optional.ofNullable(expenses).map(expenseCountDTOS -> ResponseEntity.ok(expenseCountDTOS))
+                    .orElse(ResponseEntity.badRequest().build());
+        } catch (IllegalArgumentException | DateTimeException ex){
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     @GetMapping("/expense/v1/merchant-summary")
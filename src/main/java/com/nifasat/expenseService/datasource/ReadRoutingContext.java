@@ -0,0 +1,25 @@
+package com.nifasat.expenseService.datasource;
+
+/**
+ * The user the current thread is reading for, so {@link ReplicaRoutingDataSource} can keep users inside their
+ * read-your-writes window on the primary. Set per request by {@link ReadRoutingInterceptor}.
+ */
+public final class ReadRoutingContext {
+
+    private static final ThreadLocal<String> USER_ID = new ThreadLocal<>();
+
+    private ReadRoutingContext() {
+    }
+
+    public static String getUserId() {
+        return USER_ID.get();
+    }
+
+    public static void setUserId(String userId) {
+        USER_ID.set(userId);
+    }
+
+    public static void clear() {
+        USER_ID.remove();
+    }
+}
@@ -0,0 +1,24 @@
+package com.nifasat.expenseService.datasource;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Binds the request's user, taken from the {@code user_id} parameter or the {@code X-User-Id} header, to the
+ * {@link ReadRoutingContext} for the duration of the request.
+ */
+public class ReadRoutingInterceptor implements HandlerInterceptor {
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String userId = request.getParameter("user_id");
+        ReadRoutingContext.setUserId(userId != null ? userId : request.getHeader("X-User-Id"));
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        ReadRoutingContext.clear();
+    }
+}
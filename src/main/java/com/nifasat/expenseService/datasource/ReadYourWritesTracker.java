@@ -0,0 +1,36 @@
+package com.nifasat.expenseService.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Remembers which users wrote within the last {@code expense.read-replicas.read-your-writes-window}. Their reads
+ * stay on the primary until the window passes, so they see their own writes despite replica lag and a lagging
+ * replica cannot refill the summary cache that the write just invalidated.
+ */
+@Component
+public class ReadYourWritesTracker {
+
+    private final Cache<String, Boolean> recentWriters;
+
+    public ReadYourWritesTracker(@Value("${expense.read-replicas.read-your-writes-window:PT5S}") Duration window) {
+        this.recentWriters = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(window)
+                .build();
+    }
+
+    public void recordWrite(String userId) {
+        if (userId != null) {
+            recentWriters.put(userId, Boolean.TRUE);
+        }
+    }
+
+    public boolean isPinnedToPrimary(String userId) {
+        return userId != null && recentWriters.getIfPresent(userId) != null;
+    }
+}
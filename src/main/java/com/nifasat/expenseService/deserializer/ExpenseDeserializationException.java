@@ -0,0 +1,9 @@
+package com.nifasat.expenseService.deserializer;
+
+import org.apache.kafka.common.errors.SerializationException;
+
+public class ExpenseDeserializationException extends SerializationException {
+    public ExpenseDeserializationException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
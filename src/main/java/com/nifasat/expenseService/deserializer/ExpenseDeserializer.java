@@ -1,21 +1,48 @@
 package com.nifasat.expenseService.deserializer;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.nifasat.expenseService.dto.ExpenseDto;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.common.serialization.Deserializer;
 
-public class ExpenseDeserializer implements Deserializer<ExpenseDto> {  // Added generic type
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deserializes {@code register_expense} payloads with a single, thread-safe {@link ObjectReader}.
+ * Failures are raised as {@link ExpenseDeserializationException} so that the wrapping
+ * {@code ErrorHandlingDeserializer} can hand the raw bytes to the dead-letter topic.
+ */
+@Slf4j
+public class ExpenseDeserializer implements Deserializer<ExpenseDto> {
+
+    private static final ObjectReader EXPENSE_READER = new ObjectMapper()
+            .registerModule(new SimpleModule().addDeserializer(Date.class, new IsoInstantDateDeserializer()))
+            .readerFor(ExpenseDto.class);
+
+    private static final Timer DESERIALIZE_TIMER = Timer.builder("expense.deserializer")
+            .description("Time to parse one expense payload")
+            .register(Metrics.globalRegistry);
+
     @Override
     public ExpenseDto deserialize(String topic, byte[] data) {
-        ObjectMapper objectMapper = new ObjectMapper();
-        ExpenseDto expenseDto = null;
+        if (data == null) {
+            return null;
+        }
+        long start = System.nanoTime();
         try {
-            expenseDto = objectMapper.readValue(data, ExpenseDto.class);
-            System.out.println("Deserialized ExpenseDto: " + objectMapper.writeValueAsString(expenseDto));  // Add debugging
+            return EXPENSE_READER.readValue(data);
         } catch (Exception ex) {
-            ex.printStackTrace();
+            Metrics.counter("expense.deserializer.failures", "topic", topic,
+                    "exception", ex.getClass().getSimpleName()).increment();
+            log.warn("Failed to deserialize expense from topic {} ({} bytes): {}", topic, data.length, ex.getMessage());
+            throw new ExpenseDeserializationException("Could not deserialize expense from topic " + topic, ex);
+        } finally {
+            DESERIALIZE_TIMER.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
-        return expenseDto;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,38 @@
+package com.nifasat.expenseService.deserializer;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+
+/**
+ * Parses {@code createdAt} values of the form {@code yyyy-MM-dd'T'HH:mm:ss.SSS'Z'} (or epoch millis)
+ * through {@link Instant#parse}, avoiding the {@code SimpleDateFormat} clone Jackson makes per value.
+ */
+public class IsoInstantDateDeserializer extends StdScalarDeserializer<Date> {
+
+    public IsoInstantDateDeserializer() {
+        super(Date.class);
+    }
+
+    @Override
+    public Date deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (p.hasToken(JsonToken.VALUE_NUMBER_INT)) {
+            return new Date(p.getLongValue());
+        }
+        String text = p.getValueAsString();
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+        try {
+            return Date.from(Instant.parse(text.trim()));
+        } catch (DateTimeParseException ex) {
+            return (Date) ctxt.handleWeirdStringValue(Date.class, text, "expected ISO-8601 instant: %s", ex.getMessage());
+        }
+    }
+}
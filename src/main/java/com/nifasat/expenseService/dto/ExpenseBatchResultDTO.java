@@ -0,0 +1,37 @@
+package com.nifasat.expenseService.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ExpenseBatchResultDTO {
+    public enum Status { CREATED, UPDATED, DELETED, NOT_FOUND, INVALID, FAILED }
+
+    private int index; // position of the item in the request body
+    private String externalId;
+    private Status status;
+    private String error;
+
+    public static ExpenseBatchResultDTO of(int index, ExpenseDto expenseDto, Status status){
+        return new ExpenseBatchResultDTO(index, expenseDto.getExternalId(), status, null);
+    }
+
+    public static ExpenseBatchResultDTO invalid(int index, ExpenseDto expenseDto, String error){
+        return new ExpenseBatchResultDTO(index, expenseDto.getExternalId(), Status.INVALID, error);
+    }
+
+    // A batch runs in one transaction, so when it fails none of its items were written
+    public static List<ExpenseBatchResultDTO> allFailed(List<ExpenseDto> expenseDtos, Exception ex){
+        List<ExpenseBatchResultDTO> results = new ArrayList<>(expenseDtos.size());
+        for (int i = 0; i < expenseDtos.size(); i++) {
+            results.add(new ExpenseBatchResultDTO(i, expenseDtos.get(i).getExternalId(), Status.FAILED, ex.getMessage()));
+        }
+        return results;
+    }
+}
@@ -1,14 +1,24 @@
 package com.nifasat.expenseService.dto;
 
+import com.nifasat.expenseService.money.Amounts;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Map;
+
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 public class ExpenseCountDTO {
     private String timePeriod; // Could be a date, month, or year depending on the filter
     private int count;
-    private Double totalAmount;
-}
\ No newline at end of file
+    private Double totalAmount; // Plain sum of the amounts, whatever their currency
+    private Long totalAmountMinor;
+    private Double normalizedTotalAmount; // In the base currency; null when a currency has no FX rate
+    private Map<String, Double> currencyTotals;
+
+    public ExpenseCountDTO(String timePeriod, int count, long totalAmountMinor) {
+        this(timePeriod, count, Amounts.toMajor(totalAmountMinor), totalAmountMinor, null, null);
+    }
+}
@@ -0,0 +1,11 @@
+package com.nifasat.expenseService.dto;
+
+/**
+ * Expense count and minor-unit total of one (day, currency) group, the day being an epoch day of the requested zone.
+ */
+public interface ExpenseDayGroup {
+    Long getEpochDay();
+    String getCurrency();
+    Long getExpenseCount();
+    Long getTotalAmountMinor();
+}
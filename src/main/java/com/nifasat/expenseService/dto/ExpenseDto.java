@@ -2,6 +2,7 @@ package com.nifasat.expenseService.dto;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonNaming;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
@@ -19,7 +20,11 @@ import java.util.Date;
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class ExpenseDto {
     private String externalId;
+    // Decimal amount of the original contract; omitted from responses when expense.money.decimal-amounts is off
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private Double amount;
+    // Exact amount in hundredths of the major unit; takes precedence over amount on input
+    private Long amountMinor;
     private String userId;
     private String merchant;
     private String currency;
@@ -0,0 +1,12 @@
+package com.nifasat.expenseService.dto;
+
+import java.util.Date;
+
+/**
+ * Size and time span of a user's history, used to decide whether and how to slice a summary scan.
+ */
+public interface ExpenseHistoryBounds {
+    Long getExpenseCount();
+    Date getFirstCreatedAt();
+    Date getLastCreatedAt();
+}
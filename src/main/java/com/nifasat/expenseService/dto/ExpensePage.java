@@ -0,0 +1,15 @@
+package com.nifasat.expenseService.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ExpensePage {
+    private List<ExpenseDto> expenses;
+    private String nextCursor; // null on the last page
+}
@@ -0,0 +1,37 @@
+package com.nifasat.expenseService.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Keyset position (created_at, id) of the last expense on a page, exchanged with clients as an opaque token.
+ */
+@Data
+@AllArgsConstructor
+public class ExpensePageCursor {
+    private Date createdAt;
+    private Long id;
+
+    /** Position just before the first expense created at or after {@code startTime}. */
+    public static ExpensePageCursor before(Date startTime){
+        return new ExpensePageCursor(new Date(startTime.getTime() - 1), Long.MAX_VALUE);
+    }
+
+    public static ExpensePageCursor decode(String token){
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":");
+            return new ExpensePageCursor(new Date(Long.parseLong(parts[0])), Long.parseLong(parts[1]));
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("Invalid cursor: " + token, ex);
+        }
+    }
+
+    public String encode(){
+        String position = createdAt.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,9 @@
+package com.nifasat.expenseService.dto;
+
+/**
+ * Count and sum projection used to compare the raw expense table with the daily rollup.
+ */
+public interface ExpenseTotals {
+    Long getExpenseCount();
+    Long getTotalAmountMinor();
+}
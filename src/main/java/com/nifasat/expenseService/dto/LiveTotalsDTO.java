@@ -0,0 +1,22 @@
+package com.nifasat.expenseService.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LiveTotalsDTO {
+    private LocalDate day;
+    private int todayCount;
+    private Double todayTotalAmount; // Plain sum of the amounts, whatever their currency
+    private Double todayNormalizedTotalAmount; // In the base currency; null when a currency has no FX rate
+    private int monthCount;
+    private Double monthTotalAmount;
+    private Double monthNormalizedTotalAmount;
+    private String topMerchant; // Of the month, by plain total
+    private String baseCurrency;
+}
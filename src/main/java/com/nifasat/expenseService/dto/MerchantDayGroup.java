@@ -0,0 +1,16 @@
+package com.nifasat.expenseService.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Expense count and minor-unit total of one (merchant, currency, day) group. Rows with a merchant id are grouped on it
+ * and carry no name; the name only separates rows the merchant backfill has not reached yet.
+ */
+public interface MerchantDayGroup {
+    Integer getMerchantId();
+    String getMerchant();
+    String getCurrency();
+    LocalDate getDay();
+    Long getExpenseCount();
+    Long getTotalAmountMinor();
+}
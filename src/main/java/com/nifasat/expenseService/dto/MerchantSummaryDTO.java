@@ -1,14 +1,24 @@
 package com.nifasat.expenseService.dto;
 
+import com.nifasat.expenseService.money.Amounts;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Map;
+
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 public class MerchantSummaryDTO {
     private String merchant;
     private int count;
-    private Double totalAmount;
+    private Double totalAmount; // Plain sum of the amounts, whatever their currency
+    private Long totalAmountMinor;
+    private Double normalizedTotalAmount; // In the base currency; null when a currency has no FX rate
+    private Map<String, Double> currencyTotals;
+
+    public MerchantSummaryDTO(String merchant, int count, long totalAmountMinor) {
+        this(merchant, count, Amounts.toMajor(totalAmountMinor), totalAmountMinor, null, null);
+    }
 }
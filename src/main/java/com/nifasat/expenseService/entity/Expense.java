@@ -7,8 +7,12 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -28,19 +32,30 @@ import java.util.UUID;
 @AllArgsConstructor
 @NoArgsConstructor
 @JsonIgnoreProperties(ignoreUnknown = true)
+@Table(indexes = {
+        @Index(name = "idx_expense_user_created_at", columnList = "user_id, created_at"),
+        @Index(name = "idx_expense_user_merchant_created_at", columnList = "user_id, merchant, created_at"),
+        @Index(name = "idx_expense_user_merchant_id_created_at", columnList = "user_id, merchant_id, created_at")
+}, uniqueConstraints = @UniqueConstraint(name = "uk_expense_user_external_id", columnNames = {"user_id", "external_id"}))
 public class Expense {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    // Pooled sequence ids let Hibernate batch inserts; allocationSize matches hibernate.jdbc.batch_size
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "expense_seq")
+    @SequenceGenerator(name = "expense_seq", sequenceName = "expense_seq", allocationSize = 50)
     private Long id;
     @Column(name = "external_id")
     private String externalId;
     @Column(name="user_id")
     private String userId;
-    @Column(name="amount")
-    private Double amount;
+    // Hundredths of the major unit, see Amounts
+    @Column(name="amount_minor")
+    private Long amountMinor;
     private String currency;
+    // As written by the client; grouping and filtering go through the merchant dimension id
     private String merchant;
+    @Column(name="merchant_id")
+    private Integer merchantId;
     @Column(name="created_at", updatable = false)
     @CreationTimestamp
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")
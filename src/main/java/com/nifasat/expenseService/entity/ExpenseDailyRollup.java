@@ -0,0 +1,36 @@
+package com.nifasat.expenseService.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Per user, day, merchant and currency totals of the raw {@link Expense} rows. Days are calendar days in the
+ * server time zone, the same zone the analytics endpoints bucket by.
+ */
+@Entity
+@Table(name = "expense_daily_rollup")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ExpenseDailyRollup {
+
+    @EmbeddedId
+    private ExpenseDailyRollupId id;
+    @Column(name = "expense_count")
+    private long count;
+    @Column(name = "total_amount_minor")
+    private long totalAmountMinor;
+    @Column(name = "max_amount_minor")
+    private long maxAmountMinor;
+
+    public void add(long amountMinor){
+        count++;
+        totalAmountMinor += amountMinor;
+        maxAmountMinor = count == 1 ? amountMinor : Math.max(maxAmountMinor, amountMinor);
+    }
+}
@@ -0,0 +1,26 @@
+package com.nifasat.expenseService.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Embeddable
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ExpenseDailyRollupId implements Serializable {
+    @Column(name = "user_id")
+    private String userId;
+    @Column(name = "expense_day")
+    private LocalDate day;
+    // Blank when the expense has no merchant, key columns cannot be null
+    @Column(name = "merchant")
+    private String merchant;
+    @Column(name = "currency")
+    private String currency;
+}
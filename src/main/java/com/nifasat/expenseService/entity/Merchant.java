@@ -0,0 +1,30 @@
+package com.nifasat.expenseService.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Merchant dimension: one row per canonical merchant, referenced from {@code expense.merchant_id}. */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "merchant", uniqueConstraints = @UniqueConstraint(name = "uk_merchant_canonical_key", columnNames = "canonical_key"))
+public class Merchant {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+    // MerchantNormalizer.key of every name that maps to this merchant
+    @Column(name = "canonical_key", nullable = false)
+    private String canonicalKey;
+    @Column(nullable = false)
+    private String name;
+}
@@ -0,0 +1,60 @@
+package com.nifasat.expenseService.fx;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Reads rates from a CSV file of {@code day,currency,rate} lines, e.g. {@code 2024-03-18,USD,83.12}, where the rate
+ * is base-currency units per unit of the currency. Blank lines, {@code #} comments and a header line are skipped.
+ * A missing file yields no rates, so only base-currency amounts can be normalized.
+ */
+@Slf4j
+public class FileFxRateProvider implements FxRateProvider {
+
+    private final Path file;
+
+    public FileFxRateProvider(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public Map<String, NavigableMap<LocalDate, Double>> loadRates() throws IOException {
+        Map<String, NavigableMap<LocalDate, Double>> rates = new HashMap<>();
+        if (!Files.exists(file)) {
+            log.warn("FX rate file {} does not exist, only base-currency amounts will be normalized", file.toAbsolutePath());
+            return rates;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || (lineNumber == 1 && line.startsWith("day,"))) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                if (fields.length != 3) {
+                    throw new IOException("Malformed FX rate at " + file + ":" + lineNumber + ": " + line);
+                }
+                try {
+                    rates.computeIfAbsent(fields[1].trim(), currency -> new TreeMap<>())
+                            .put(LocalDate.parse(fields[0].trim()), Double.parseDouble(fields[2].trim()));
+                } catch (RuntimeException ex) {
+                    throw new IOException("Malformed FX rate at " + file + ":" + lineNumber + ": " + line, ex);
+                }
+            }
+        }
+        return rates;
+    }
+}
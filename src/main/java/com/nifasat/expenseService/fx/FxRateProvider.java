@@ -0,0 +1,16 @@
+package com.nifasat.expenseService.fx;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.NavigableMap;
+
+/**
+ * Source of the daily rates loaded into {@link FxRateTable}. The file-backed provider is used unless the
+ * application defines its own bean, e.g. one calling a rates API.
+ */
+public interface FxRateProvider {
+
+    /** Base-currency units per one unit of each currency, keyed by currency code and day. */
+    Map<String, NavigableMap<LocalDate, Double>> loadRates() throws IOException;
+}
@@ -0,0 +1,46 @@
+package com.nifasat.expenseService.fx;
+
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory FX rate table used to normalize aggregates into {@code expense.fx.base-currency}. The snapshot is
+ * reloaded from the {@link FxRateProvider} every {@code expense.fx.refresh-interval} and swapped atomically; a
+ * failed reload keeps serving the previous snapshot.
+ */
+@Slf4j
+@Component
+public class FxRateTable {
+    @Autowired
+    private FxRateProvider provider;
+    @Value("${expense.fx.base-currency:INR}")
+    private String baseCurrency;
+
+    private volatile FxRates rates;
+
+    @PostConstruct
+    void init(){
+        rates = FxRates.empty(baseCurrency);
+        refresh();
+    }
+
+    @Scheduled(fixedDelayString = "${expense.fx.refresh-interval:PT1H}", initialDelayString = "${expense.fx.refresh-interval:PT1H}")
+    public void refresh(){
+        try {
+            rates = FxRates.of(baseCurrency, provider.loadRates());
+            log.info("Loaded FX rates for {} currencies into {}", rates.size(), baseCurrency);
+        } catch (Exception ex) {
+            Metrics.counter("expense.fx.refresh.failures").increment();
+            log.error("Refreshing FX rates failed, keeping the previous rates", ex);
+        }
+    }
+
+    public FxRates current(){
+        return rates;
+    }
+}
@@ -0,0 +1,82 @@
+package com.nifasat.expenseService.fx;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+
+/**
+ * Immutable snapshot of daily FX rates into one base currency. Each currency's rates are kept as parallel sorted
+ * {@code long[]} epoch days and {@code double[]} rates, and a lookup takes the latest rate on or before the requested
+ * day. Days before a currency's first rate use that first rate.
+ */
+public final class FxRates {
+
+    private final String baseCurrency;
+    private final Map<String, long[]> days;
+    private final Map<String, double[]> rates;
+
+    private FxRates(String baseCurrency, Map<String, long[]> days, Map<String, double[]> rates) {
+        this.baseCurrency = baseCurrency;
+        this.days = days;
+        this.rates = rates;
+    }
+
+    public static FxRates empty(String baseCurrency) {
+        return new FxRates(baseCurrency, Map.of(), Map.of());
+    }
+
+    /** Builds a snapshot from base-currency units per one unit of each currency, keyed by currency and day. */
+    public static FxRates of(String baseCurrency, Map<String, ? extends NavigableMap<LocalDate, Double>> ratesByCurrency) {
+        Map<String, long[]> days = new HashMap<>();
+        Map<String, double[]> rates = new HashMap<>();
+        ratesByCurrency.forEach((currency, byDay) -> {
+            if (byDay.isEmpty()) {
+                return;
+            }
+            long[] currencyDays = new long[byDay.size()];
+            double[] currencyRates = new double[byDay.size()];
+            int i = 0;
+            for (Map.Entry<LocalDate, Double> rate : byDay.entrySet()) {
+                currencyDays[i] = rate.getKey().toEpochDay();
+                currencyRates[i++] = rate.getValue();
+            }
+            days.put(currency, currencyDays);
+            rates.put(currency, currencyRates);
+        });
+        return new FxRates(baseCurrency, days, rates);
+    }
+
+    public String getBaseCurrency() {
+        return baseCurrency;
+    }
+
+    /**
+     * Base-currency units per unit of {@code currency} on the given day. Blank currencies are taken to be the base
+     * currency; unknown ones return NaN so any total they are added to is NaN as well.
+     */
+    public double rate(String currency, long epochDay) {
+        if (currency == null || currency.isEmpty() || currency.equals(baseCurrency)) {
+            return 1.0;
+        }
+        long[] currencyDays = days.get(currency);
+        if (currencyDays == null) {
+            return Double.NaN;
+        }
+        int index = Arrays.binarySearch(currencyDays, epochDay);
+        if (index < 0) {
+            index = Math.max(0, -index - 2);
+        }
+        return rates.get(currency)[index];
+    }
+
+    public double convert(double amount, String currency, long epochDay) {
+        return amount * rate(currency, epochDay);
+    }
+
+    /** Currencies with at least one rate, excluding the base currency. */
+    public int size() {
+        return days.size();
+    }
+}
@@ -0,0 +1,94 @@
+package com.nifasat.expenseService.job;
+
+import com.nifasat.expenseService.repository.ExpenseRepository;
+import com.nifasat.expenseService.service.ExpenseArchiveService;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Period;
+import java.time.YearMonth;
+import java.time.ZoneId;
+
+/**
+ * Moves every calendar month older than {@code expense.archive.horizon} out of the expense table into the
+ * archive store, one user at a time. Every instance schedules it, so a run first takes the MySQL named lock
+ * {@value #LOCK_NAME} on a connection it keeps for the whole run; an instance that finds the lock held skips that run.
+ * {@link ExpensePartitionMaintenanceJob} takes the same lock, so partitions are never dropped while a month is moved.
+ */
+@Slf4j
+@Component
+public class ExpenseArchiveJob {
+    static final String LOCK_NAME = "expense-archive";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ExpenseRepository expenseRepository;
+    @Autowired
+    private ExpenseArchiveService archiveService;
+    @Value("${expense.archive.enabled:false}")
+    private boolean enabled;
+    @Value("${expense.archive.horizon:P13M}")
+    private Period horizon;
+
+    @Scheduled(cron = "${expense.archive.cron:0 0 4 * * *}")
+    public void archive(){
+        if(!enabled){
+            return;
+        }
+        if(!runLocked(jdbcTemplate, this::archiveAll)){
+            log.info("Expense archiving is running on another instance, skipping this run");
+        }
+    }
+
+    /** Runs the task holding the {@value #LOCK_NAME} named lock; returns false without running it when the lock is held. */
+    static boolean runLocked(JdbcTemplate jdbcTemplate, Runnable task){
+        Boolean ran = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            if(!lock(connection, "SELECT GET_LOCK(?, 0)")){
+                return false;
+            }
+            try {
+                task.run();
+            } finally {
+                lock(connection, "SELECT RELEASE_LOCK(?)");
+            }
+            return true;
+        });
+        return Boolean.TRUE.equals(ran);
+    }
+
+    private void archiveAll(){
+        YearMonth cutoff = YearMonth.now(ZoneId.systemDefault()).minusMonths(horizon.toTotalMonths());
+        long archived = 0;
+        for (String userId : expenseRepository.findDistinctUserIds()) {
+            try {
+                int moved = archiveService.archiveUser(userId, cutoff);
+                Metrics.counter("expense.archive.rows").increment(moved);
+                archived += moved;
+            } catch (RuntimeException ex) {
+                log.error("Archiving expenses of user {} failed, will retry on the next run", userId, ex);
+            }
+        }
+        log.info("Archived {} expenses created before {}", archived, cutoff);
+    }
+
+    // GET_LOCK and RELEASE_LOCK both answer 1 on success, 0 or NULL otherwise
+    private static boolean lock(Connection connection, String sql) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, LOCK_NAME);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getInt(1) == 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.nifasat.expenseService.job;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Period;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the monthly partitions of the expense table (see {@code db/partitioning/expense_partition_by_month.sql})
+ * ahead of the clock by splitting {@code p_future}, and drops partitions the archive job has already emptied.
+ * Only runs when {@code expense.partitioning.enabled} is set, since the table is not partitioned by default. Runs hold
+ * the archive job's named lock, so instances starting together do not reorganize the table at the same time and no
+ * partition is dropped while its month is being archived.
+ */
+@Slf4j
+@Component
+public class ExpensePartitionMaintenanceJob {
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+    private static final String FUTURE_PARTITION = "p_future";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Value("${expense.partitioning.enabled:false}")
+    private boolean enabled;
+    @Value("${expense.partitioning.months-ahead:3}")
+    private int monthsAhead;
+    @Value("${expense.archive.enabled:false}")
+    private boolean archiveEnabled;
+    @Value("${expense.archive.horizon:P13M}")
+    private Period horizon;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup(){
+        maintain();
+    }
+
+    @Scheduled(cron = "${expense.partitioning.cron:0 0 5 * * *}")
+    public void maintain(){
+        if(!enabled){
+            return;
+        }
+        if(!ExpenseArchiveJob.runLocked(jdbcTemplate, this::maintainPartitions)){
+            log.info("Expense archiving or partition maintenance is running on another instance, skipping this run");
+        }
+    }
+
+    private void maintainPartitions(){
+        List<Map<String, Object>> partitions = jdbcTemplate.queryForList(
+                "select partition_name, table_rows from information_schema.partitions "
+                        + "where table_schema = database() and table_name = 'expense' and partition_name is not null "
+                        + "order by partition_ordinal_position");
+        if(partitions.isEmpty()){
+            log.warn("expense.partitioning.enabled is set but the expense table is not partitioned");
+            return;
+        }
+        YearMonth now = YearMonth.now(ZoneId.systemDefault());
+        addUpcoming(partitions, now);
+        if(archiveEnabled){
+            dropArchived(partitions, now.minusMonths(horizon.toTotalMonths()));
+        }
+    }
+
+    private void addUpcoming(List<Map<String, Object>> partitions, YearMonth now){
+        YearMonth latest = null;
+        for (Map<String, Object> partition : partitions) {
+            YearMonth month = monthOf((String) partition.get("partition_name"));
+            if(month != null && (latest == null || month.isAfter(latest))){
+                latest = month;
+            }
+        }
+        YearMonth next = latest == null ? now : latest.plusMonths(1);
+        YearMonth last = now.plusMonths(monthsAhead);
+        if(next.isAfter(last)){
+            return;
+        }
+        StringBuilder definitions = new StringBuilder();
+        for (YearMonth month = next; !month.isAfter(last); month = month.plusMonths(1)) {
+            definitions.append("partition ").append(PARTITION_NAME.format(month))
+                    .append(" values less than ('").append(month.plusMonths(1).atDay(1)).append(" 00:00:00'), ");
+        }
+        definitions.append("partition ").append(FUTURE_PARTITION).append(" values less than (maxvalue)");
+        jdbcTemplate.execute("alter table expense reorganize partition " + FUTURE_PARTITION + " into (" + definitions + ")");
+        log.info("Added expense partitions from {} to {}", next, last);
+    }
+
+    private void dropArchived(List<Map<String, Object>> partitions, YearMonth cutoff){
+        for (Map<String, Object> partition : partitions) {
+            String name = (String) partition.get("partition_name");
+            YearMonth month = monthOf(name);
+            if(month == null || !month.isBefore(cutoff)){
+                continue;
+            }
+            Boolean dropped = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> dropIfEmpty(connection, name));
+            if(Boolean.TRUE.equals(dropped)){
+                log.info("Dropped archived expense partition {}", name);
+            }else{
+                log.info("Kept expense partition {}, it still holds rows", name);
+            }
+        }
+    }
+
+    // table_rows is an estimate, so the partition is counted for real; the write lock keeps rows, such as an archived
+    // expense written back, from arriving between the count and the drop
+    private static boolean dropIfEmpty(Connection connection, String partition) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("lock tables expense write");
+            try {
+                try (ResultSet resultSet = statement.executeQuery("select exists(select 1 from expense partition (" + partition + "))")) {
+                    if(resultSet.next() && resultSet.getBoolean(1)){
+                        return false;
+                    }
+                }
+                statement.execute("alter table expense drop partition " + partition);
+                return true;
+            } finally {
+                statement.execute("unlock tables");
+            }
+        }
+    }
+
+    private static YearMonth monthOf(String partitionName){
+        if(partitionName == null || !partitionName.matches("p\\d{6}")){
+            return null;
+        }
+        return YearMonth.parse(partitionName.substring(1), DateTimeFormatter.ofPattern("yyyyMM"));
+    }
+}
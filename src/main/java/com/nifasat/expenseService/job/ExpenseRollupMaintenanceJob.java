@@ -0,0 +1,55 @@
+package com.nifasat.expenseService.job;
+
+import com.nifasat.expenseService.repository.ExpenseRepository;
+import com.nifasat.expenseService.service.ExpenseRollupService;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Backfills the daily rollup and periodically compares it with the raw expense table, rebuilding any user
+ * whose totals have drifted.
+ */
+@Slf4j
+@Component
+public class ExpenseRollupMaintenanceJob {
+    @Autowired
+    private ExpenseRepository expenseRepository;
+    @Autowired
+    private ExpenseRollupService rollupService;
+    @Value("${expense.rollup.backfill-on-startup:false}")
+    private boolean backfillOnStartup;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup(){
+        if(rollupService.isEnabled() && backfillOnStartup){
+            rebuildAll();
+        }
+    }
+
+    public void rebuildAll(){
+        for (String userId : expenseRepository.findDistinctUserIds()) {
+            rollupService.rebuildUser(userId);
+        }
+        log.info("Rebuilt expense daily rollup for all users");
+    }
+
+    @Scheduled(cron = "${expense.rollup.consistency-check.cron:0 30 3 * * *}")
+    public void checkConsistency(){
+        if(!rollupService.isEnabled()){
+            return;
+        }
+        for (String userId : expenseRepository.findDistinctUserIds()) {
+            if(!rollupService.isConsistent(userId)){
+                log.warn("Expense daily rollup for user {} drifted from the raw table, rebuilding", userId);
+                Metrics.counter("expense.rollup.inconsistencies").increment();
+                rollupService.rebuildUser(userId);
+            }
+        }
+    }
+}
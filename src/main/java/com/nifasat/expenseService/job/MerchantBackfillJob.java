@@ -0,0 +1,92 @@
+package com.nifasat.expenseService.job;
+
+import com.nifasat.expenseService.merchant.MerchantDictionary;
+import com.nifasat.expenseService.repository.ExpenseRepository;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Gives every expense written before the merchant dimension existed its merchant id, walking the rows without one
+ * in id order, one batch per transaction. New rows get their id when written, so a complete pass (rows with a blank
+ * merchant keep none) switches merchant filters over to the id index.
+ */
+@Slf4j
+@Component
+public class MerchantBackfillJob {
+    private static final String UPDATE_SQL = "UPDATE expense SET merchant_id = ? WHERE id = ? AND merchant_id IS NULL";
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+    @Autowired
+    private MerchantDictionary merchantDictionary;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Value("${expense.merchant.backfill.enabled:true}")
+    private boolean enabled;
+    @Value("${expense.merchant.backfill.batch-size:1000}")
+    private int batchSize;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    void init(){
+        // Read-write, so the rows are read from the primary rather than a lagging replica
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(initialDelayString = "${expense.merchant.backfill.initial-delay:PT30S}",
+            fixedDelayString = "${expense.merchant.backfill.interval:PT10M}")
+    public void backfill(){
+        if(!enabled || merchantDictionary.isBackfilled()){
+            return;
+        }
+        long afterId = 0;
+        long filled = 0;
+        try {
+            while (true) {
+                long from = afterId;
+                List<Object[]> rows = transactionTemplate.execute(status -> fillBatch(from));
+                if(rows.isEmpty()){
+                    break;
+                }
+                afterId = (Long) rows.get(rows.size() - 1)[0];
+                filled += rows.size();
+            }
+        } catch (RuntimeException ex) {
+            log.error("Backfilling merchant ids stopped after expense {}, will retry on the next run", afterId, ex);
+            return;
+        }
+        merchantDictionary.markBackfilled();
+        log.info("Merchant ids backfilled, {} expenses visited", filled);
+    }
+
+    private List<Object[]> fillBatch(long afterId){
+        List<Object[]> rows = expenseRepository.findWithoutMerchantIdAfter(afterId, Limit.of(batchSize));
+        List<Object[]> updates = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            Integer merchantId = merchantDictionary.idOf((String) row[1]);
+            if(merchantId != null){
+                updates.add(new Object[]{merchantId, row[0]});
+            }
+        }
+        if(!updates.isEmpty()){
+            jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+            Metrics.counter("expense.merchant.backfill.rows").increment(updates.size());
+        }
+        return rows;
+    }
+}
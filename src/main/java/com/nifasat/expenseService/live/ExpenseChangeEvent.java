@@ -0,0 +1,20 @@
+package com.nifasat.expenseService.live;
+
+import com.nifasat.expenseService.dto.ExpenseDto;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Published by {@code ExpenseService} for every write and delivered to the live feed once the transaction commits.
+ * Upserted expenses are snapshots taken at write time, so the event does not hold on to managed entities.
+ */
+@Getter
+@AllArgsConstructor
+public class ExpenseChangeEvent {
+    private final String userId;
+    private final List<ExpenseDto> upserted;
+    private final Collection<String> deletedExternalIds;
+}
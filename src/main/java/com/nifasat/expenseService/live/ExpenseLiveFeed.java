@@ -0,0 +1,180 @@
+package com.nifasat.expenseService.live;
+
+import com.nifasat.expenseService.dto.ExpenseDto;
+import com.nifasat.expenseService.fx.FxRateTable;
+import com.nifasat.expenseService.service.ExpenseRollupService;
+import com.nifasat.expenseService.service.ExpenseService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes committed expense writes, from the Kafka consumer and the REST endpoints alike, to the user's open SSE
+ * connections together with running totals for today and this month, so clients no longer poll. Subscribers are
+ * held in memory, so a client only sees writes handled by the instance it is connected to; clients reconnect on
+ * {@code resync} or a dropped connection and refetch through the REST endpoints. Each write runs on a thread of its
+ * own and a sender waits at most {@code expense.live.slow-send} for it, so a client whose socket stops accepting data
+ * is dropped without holding a sender; the stalled write is left to the container's connection timeout.
+ */
+@Slf4j
+@Service
+public class ExpenseLiveFeed {
+    @Autowired
+    private ExpenseService expenseService;
+    @Autowired
+    private ExpenseRollupService rollupService;
+    @Autowired
+    private FxRateTable fxRateTable;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Value("${expense.live.max-subscribers:10000}")
+    private int maxSubscribers;
+    @Value("${expense.live.buffer-size:256}")
+    private int bufferSize;
+    @Value("${expense.live.timeout:PT30M}")
+    private Duration timeout;
+    @Value("${expense.live.sender-threads:4}")
+    private int senderThreads;
+    @Value("${expense.live.slow-send:PT2S}")
+    private Duration slowSend;
+
+    private final Map<String, Set<LiveSubscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private ExecutorService senders;
+    private ExecutorService writers;
+    private Counter overflows;
+    private Counter sendFailures;
+    private Counter slowSends;
+
+    @PostConstruct
+    void init(){
+        senders = Executors.newFixedThreadPool(senderThreads);
+        writers = Executors.newCachedThreadPool();
+        meterRegistry.gauge("expense.live.subscribers", subscriberCount);
+        overflows = meterRegistry.counter("expense.live.overflows");
+        sendFailures = meterRegistry.counter("expense.live.send.failures");
+        slowSends = meterRegistry.counter("expense.live.send.slow");
+    }
+
+    @PreDestroy
+    void shutdown(){
+        senders.shutdownNow();
+        writers.shutdownNow();
+        subscribers.values().forEach(users -> users.forEach(subscriber -> subscriber.getEmitter().complete()));
+    }
+
+    /**
+     * Opens a feed for the user, seeded with this month's expenses. Throws {@link IllegalStateException} when the
+     * instance already holds {@code expense.live.max-subscribers} connections.
+     */
+    public SseEmitter subscribe(String userId){
+        if(subscriberCount.incrementAndGet() > maxSubscribers){
+            subscriberCount.decrementAndGet();
+            throw new IllegalStateException("Too many live subscribers");
+        }
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        LiveSubscriber subscriber = new LiveSubscriber(userId, emitter, bufferSize, rollupService.getZoneId(), today(),
+                overflows);
+        // Register before loading the month, so no change committed in between is missed. Adding inside compute keeps
+        // it atomic with an unsubscribe removing the user's last, now empty, set
+        subscribers.compute(userId, (key, users) -> {
+            Set<LiveSubscriber> registered = users == null ? ConcurrentHashMap.newKeySet() : users;
+            registered.add(subscriber);
+            return registered;
+        });
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(ex -> unsubscribe(subscriber));
+        try {
+            ZonedDateTime monthStart = today().withDayOfMonth(1).atStartOfDay(rollupService.getZoneId());
+            List<ExpenseDto> month = expenseService.getTimeBasedExpense(userId, monthStart.toInstant().toEpochMilli(),
+                    System.currentTimeMillis());
+            if(subscriber.seed(month, fxRateTable.current())){
+                drain(subscriber);
+            }
+        } catch (RuntimeException ex) {
+            unsubscribe(subscriber);
+            throw ex;
+        }
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onExpenseChange(ExpenseChangeEvent event){
+        Set<LiveSubscriber> userSubscribers = subscribers.get(event.getUserId());
+        if(userSubscribers == null){
+            return;
+        }
+        for (LiveSubscriber subscriber : userSubscribers) {
+            if(subscriber.onChange(event.getUpserted(), event.getDeletedExternalIds(), fxRateTable.current())){
+                drain(subscriber);
+            }
+        }
+    }
+
+    /** Rolls the running totals over at midnight and keeps idle connections (and proxies) from timing out. */
+    @Scheduled(fixedDelayString = "${expense.live.heartbeat-interval:PT15S}")
+    public void heartbeat(){
+        LocalDate today = today();
+        subscribers.values().forEach(users -> users.forEach(subscriber -> {
+            if(subscriber.onTick(today)){
+                drain(subscriber);
+            }
+        }));
+    }
+
+    private void drain(LiveSubscriber subscriber){
+        try {
+            senders.execute(() -> {
+                try {
+                    subscriber.drain(fxRateTable.current().getBaseCurrency(), writers, slowSend);
+                } catch (Exception ex) {
+                    // The client went away or stopped reading; completing the emitter triggers unsubscribe
+                    (ex instanceof LiveSubscriber.SlowSendException ? slowSends : sendFailures).increment();
+                    subscriber.close();
+                    subscriber.getEmitter().completeWithError(ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            // Shutting down; nothing will send to this client again
+            unsubscribe(subscriber);
+            subscriber.getEmitter().complete();
+        }
+    }
+
+    private void unsubscribe(LiveSubscriber subscriber){
+        subscriber.close();
+        boolean[] removed = new boolean[1];
+        subscribers.computeIfPresent(subscriber.getUserId(), (userId, users) -> {
+            removed[0] = users.remove(subscriber);
+            return users.isEmpty() ? null : users;
+        });
+        if(removed[0]){
+            subscriberCount.decrementAndGet();
+        }
+    }
+
+    private LocalDate today(){
+        return LocalDate.now(rollupService.getZoneId());
+    }
+}
@@ -0,0 +1,195 @@
+package com.nifasat.expenseService.live;
+
+import com.nifasat.expenseService.dto.ExpenseDto;
+import com.nifasat.expenseService.dto.LiveTotalsDTO;
+import com.nifasat.expenseService.fx.FxRates;
+import io.micrometer.core.instrument.Counter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * One SSE connection. Changes are applied to the running totals immediately and queued for sending in a buffer of
+ * at most {@code bufferSize} expenses; totals are coalesced, so only the latest snapshot is sent. A client that falls
+ * behind by more than the buffer gets a single {@code resync} event instead of the dropped expenses and is expected
+ * to refetch through the REST endpoints. Sending happens on the feed's sender pool, one drain at a time, with each
+ * write handed to a writer thread. A write that does not finish within the slow-send limit, which only happens once
+ * the client stops reading and the socket buffer is full, fails the drain with {@link SlowSendException} so the client
+ * is dropped instead of holding a sender.
+ */
+final class LiveSubscriber {
+
+    private final String userId;
+    private final SseEmitter emitter;
+    private final int bufferSize;
+    private final RunningTotals totals;
+    private final Counter overflows;
+    private final ArrayDeque<ExpenseDto> pending = new ArrayDeque<>();
+    // External ids deleted before the initial snapshot was loaded, which the snapshot must not bring back
+    private Set<String> deletedBeforeSeed = new HashSet<>();
+    private boolean totalsChanged;
+    private boolean overflowed;
+    private boolean heartbeatDue;
+    private boolean draining;
+    private boolean closed;
+
+    LiveSubscriber(String userId, SseEmitter emitter, int bufferSize, ZoneId zone, LocalDate today, Counter overflows) {
+        this.userId = userId;
+        this.emitter = emitter;
+        this.bufferSize = bufferSize;
+        this.totals = new RunningTotals(zone, today);
+        this.overflows = overflows;
+    }
+
+    String getUserId() {
+        return userId;
+    }
+
+    SseEmitter getEmitter() {
+        return emitter;
+    }
+
+    /** Loads the month so far; live changes that arrived first win. Returns whether a drain should be scheduled. */
+    synchronized boolean seed(List<ExpenseDto> expenses, FxRates rates) {
+        for (ExpenseDto expense : expenses) {
+            if (!deletedBeforeSeed.contains(expense.getExternalId())) {
+                totals.put(expense, rates, false);
+            }
+        }
+        deletedBeforeSeed = null;
+        totalsChanged = true;
+        return schedule();
+    }
+
+    /** Returns whether a drain should be scheduled; false when one is already running or nothing changed. */
+    synchronized boolean onChange(List<ExpenseDto> upserted, Collection<String> deletedExternalIds, FxRates rates) {
+        if (closed) {
+            return false;
+        }
+        for (String externalId : deletedExternalIds) {
+            totals.remove(externalId);
+            if (deletedBeforeSeed != null) {
+                deletedBeforeSeed.add(externalId);
+            }
+        }
+        for (ExpenseDto expense : upserted) {
+            totals.put(expense, rates, true);
+            if (!overflowed) {
+                if (pending.size() < bufferSize) {
+                    pending.add(expense);
+                } else {
+                    overflowed = true;
+                    overflows.increment();
+                    pending.clear();
+                }
+            }
+        }
+        totalsChanged = true;
+        return schedule();
+    }
+
+    synchronized boolean onTick(LocalDate today) {
+        if (closed) {
+            return false;
+        }
+        totalsChanged |= totals.rollTo(today);
+        heartbeatDue = true;
+        return schedule();
+    }
+
+    /** Sends everything queued; runs until the buffer is empty so concurrent changes are picked up by this drain. */
+    void drain(String baseCurrency, ExecutorService writers, Duration slowSend) throws IOException {
+        while (true) {
+            List<ExpenseDto> expenses;
+            boolean resync;
+            boolean heartbeat;
+            LiveTotalsDTO snapshot;
+            synchronized (this) {
+                // Totals are held back until the month has been loaded
+                boolean sendTotals = totalsChanged && deletedBeforeSeed == null;
+                if (closed || (pending.isEmpty() && !overflowed && !sendTotals && !heartbeatDue)) {
+                    draining = false;
+                    return;
+                }
+                expenses = new ArrayList<>(pending);
+                pending.clear();
+                resync = overflowed;
+                heartbeat = heartbeatDue;
+                snapshot = sendTotals ? totals.snapshot(baseCurrency) : null;
+                overflowed = false;
+                heartbeatDue = false;
+                totalsChanged &= !sendTotals;
+            }
+            long limit = slowSend.toNanos();
+            if (resync) {
+                send(SseEmitter.event().name("resync").data(""), writers, limit);
+            }
+            for (ExpenseDto expense : expenses) {
+                send(SseEmitter.event().name("expense").id(expense.getExternalId()).data(expense), writers, limit);
+            }
+            if (snapshot != null) {
+                send(SseEmitter.event().name("totals").data(snapshot), writers, limit);
+            }
+            if (heartbeat && !resync && expenses.isEmpty() && snapshot == null) {
+                send(SseEmitter.event().comment("keepalive"), writers, limit);
+            }
+        }
+    }
+
+    private void send(SseEmitter.SseEventBuilder event, ExecutorService writers, long limitNanos) throws IOException {
+        Future<?> write = writers.submit(() -> {
+            emitter.send(event);
+            return null;
+        });
+        try {
+            write.get(limitNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException ex) {
+            // Blocking socket writes ignore the interrupt; the write thread stays until the connection is closed
+            write.cancel(true);
+            throw new SlowSendException(userId);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IOException(ex.getCause());
+        } catch (InterruptedException ex) {
+            write.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while sending to a live client of user " + userId);
+        }
+    }
+
+    synchronized void close() {
+        closed = true;
+        pending.clear();
+    }
+
+    static final class SlowSendException extends IOException {
+        SlowSendException(String userId) {
+            super("Live client of user " + userId + " is not reading fast enough");
+        }
+    }
+
+    private boolean schedule() {
+        if (draining) {
+            return false;
+        }
+        draining = true;
+        return true;
+    }
+}
@@ -0,0 +1,126 @@
+package com.nifasat.expenseService.live;
+
+import com.nifasat.expenseService.dto.ExpenseDto;
+import com.nifasat.expenseService.dto.LiveTotalsDTO;
+import com.nifasat.expenseService.fx.FxRates;
+import com.nifasat.expenseService.money.Amounts;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Today's and this month's totals of one subscriber, kept by external id so an upsert replaces the amount it
+ * overwrites instead of counting it twice. Only the current month's expenses are held. Not thread-safe.
+ */
+final class RunningTotals {
+
+    private final ZoneId zone;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, Long> merchantTotals = new HashMap<>();
+    private LocalDate today;
+    private int todayCount;
+    private long todayTotalMinor;
+    private double todayNormalized;
+    private int todayUnconverted;
+    private long monthTotalMinor;
+    private double monthNormalized;
+    private int monthUnconverted;
+
+    RunningTotals(ZoneId zone, LocalDate today) {
+        this.zone = zone;
+        this.today = today;
+    }
+
+    /** Adds or replaces an expense; ignored when it falls outside the current month. */
+    void put(ExpenseDto expense, FxRates rates, boolean replace) {
+        if (Objects.isNull(expense.getExternalId()) || Objects.isNull(expense.getCreatedAt())) {
+            return;
+        }
+        if (!replace && entries.containsKey(expense.getExternalId())) {
+            return;
+        }
+        LocalDate day = expense.getCreatedAt().toInstant().atZone(zone).toLocalDate();
+        remove(expense.getExternalId());
+        if (!day.withDayOfMonth(1).equals(today.withDayOfMonth(1))) {
+            return;
+        }
+        long amountMinor = Objects.isNull(expense.getAmountMinor()) ? 0 : expense.getAmountMinor();
+        Entry entry = new Entry(day, amountMinor, rates.convert(Amounts.toMajor(amountMinor), expense.getCurrency(), day.toEpochDay()),
+                Objects.toString(expense.getMerchant(), ""));
+        entries.put(expense.getExternalId(), entry);
+        apply(entry, 1);
+    }
+
+    void remove(String externalId) {
+        Entry entry = entries.remove(externalId);
+        if (entry != null) {
+            apply(entry, -1);
+        }
+    }
+
+    /** Moves to a new day, dropping last month's expenses when the month changed; returns whether anything moved. */
+    boolean rollTo(LocalDate day) {
+        if (day.equals(today)) {
+            return false;
+        }
+        today = day;
+        Map<String, Entry> kept = new HashMap<>(entries);
+        entries.clear();
+        merchantTotals.clear();
+        todayCount = 0;
+        todayTotalMinor = 0;
+        todayNormalized = 0;
+        todayUnconverted = 0;
+        monthTotalMinor = 0;
+        monthNormalized = 0;
+        monthUnconverted = 0;
+        kept.forEach((externalId, entry) -> {
+            if (entry.day.withDayOfMonth(1).equals(day.withDayOfMonth(1))) {
+                entries.put(externalId, entry);
+                apply(entry, 1);
+            }
+        });
+        return true;
+    }
+
+    LiveTotalsDTO snapshot(String baseCurrency) {
+        String topMerchant = null;
+        long topTotal = Long.MIN_VALUE;
+        for (Map.Entry<String, Long> merchant : merchantTotals.entrySet()) {
+            if (merchant.getValue() > topTotal) {
+                topMerchant = merchant.getKey();
+                topTotal = merchant.getValue();
+            }
+        }
+        return new LiveTotalsDTO(today, todayCount, Amounts.toMajor(todayTotalMinor), todayUnconverted > 0 ? null : todayNormalized,
+                entries.size(), Amounts.toMajor(monthTotalMinor), monthUnconverted > 0 ? null : monthNormalized,
+                Objects.isNull(topMerchant) || topMerchant.isEmpty() ? null : topMerchant, baseCurrency);
+    }
+
+    // Amounts without an FX rate are counted instead of summed, so removing them leaves the normalized totals usable
+    private void apply(Entry entry, int sign) {
+        boolean converted = !Double.isNaN(entry.normalized);
+        monthTotalMinor += sign * entry.amountMinor;
+        if (converted) {
+            monthNormalized += sign * entry.normalized;
+        } else {
+            monthUnconverted += sign;
+        }
+        merchantTotals.merge(entry.merchant, sign * entry.amountMinor, Long::sum);
+        if (entry.day.equals(today)) {
+            todayCount += sign;
+            todayTotalMinor += sign * entry.amountMinor;
+            if (converted) {
+                todayNormalized += sign * entry.normalized;
+            } else {
+                todayUnconverted += sign;
+            }
+        }
+    }
+
+    private record Entry(LocalDate day, long amountMinor, double normalized, String merchant) {
+    }
+}
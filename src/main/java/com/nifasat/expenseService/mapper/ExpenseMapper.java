@@ -0,0 +1,73 @@
+package com.nifasat.expenseService.mapper;
+
+import com.nifasat.expenseService.dto.ExpenseDto;
+import com.nifasat.expenseService.entity.Expense;
+import com.nifasat.expenseService.money.Amounts;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Field-by-field conversion between {@link Expense} and {@link ExpenseDto}. Replaces {@code ObjectMapper.convertValue},
+ * which serialized every object into a token buffer and parsed it back.
+ */
+@Component
+public class ExpenseMapper {
+    @Value("${expense.money.decimal-amounts:true}")
+    private boolean decimalAmounts = true;
+
+    public ExpenseDto toDto(Expense expense){
+        return new ExpenseDto(expense.getExternalId(), decimalAmounts ? Amounts.toMajor(expense.getAmountMinor()) : null,
+                expense.getAmountMinor(), expense.getUserId(), expense.getMerchant(), expense.getCurrency(), expense.getCreatedAt());
+    }
+
+    /**
+     * Amount of an incoming expense in minor units: amountMinor when sent, otherwise the rounded decimal amount.
+     * Throws IllegalArgumentException for a currency with more decimals than are stored.
+     */
+    public Long amountMinorOf(ExpenseDto expenseDto){
+        Amounts.requireFits(expenseDto.getCurrency());
+        return Objects.nonNull(expenseDto.getAmountMinor()) ? expenseDto.getAmountMinor() : Amounts.toMinor(expenseDto.getAmount());
+    }
+
+    public List<ExpenseDto> toDtos(List<Expense> expenses){
+        List<ExpenseDto> expenseDtos = new ArrayList<>(expenses.size());
+        for (Expense expense : expenses) {
+            expenseDtos.add(toDto(expense));
+        }
+        return expenseDtos;
+    }
+
+    /**
+     * External id for producers that do not send one: a name-based UUID of the expense's identifying fields, so a
+     * redelivered message maps to the same row. Without a createdAt nothing identifies the message, so a random
+     * UUID is used; the Kafka consumer fills those in from the record's position in the log before they get here.
+     */
+    public String deriveExternalId(ExpenseDto expenseDto){
+        if(Objects.isNull(expenseDto.getCreatedAt())){
+            return UUID.randomUUID().toString();
+        }
+        // Decimal amounts keep their previous identity, so redeliveries from before minor units still match
+        Object amount = Objects.isNull(expenseDto.getAmount()) && Objects.nonNull(expenseDto.getAmountMinor())
+                ? "minor:" + expenseDto.getAmountMinor() : expenseDto.getAmount();
+        String identity = expenseDto.getUserId() + '\u0000' + expenseDto.getCreatedAt().getTime() + '\u0000'
+                + amount + '\u0000' + expenseDto.getMerchant() + '\u0000' + expenseDto.getCurrency();
+        return UUID.nameUUIDFromBytes(identity.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    public Expense toEntity(ExpenseDto expenseDto){
+        return Expense.builder()
+                .externalId(expenseDto.getExternalId())
+                .amountMinor(amountMinorOf(expenseDto))
+                .userId(expenseDto.getUserId())
+                .merchant(expenseDto.getMerchant())
+                .currency(expenseDto.getCurrency())
+                .createdAt(expenseDto.getCreatedAt())
+                .build();
+    }
+}
@@ -0,0 +1,204 @@
+package com.nifasat.expenseService.merchant;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nifasat.expenseService.entity.Expense;
+import com.nifasat.expenseService.entity.Merchant;
+import com.nifasat.expenseService.repository.MerchantRepository;
+import jakarta.annotation.PostConstruct;
+import org.apache.logging.log4j.util.Strings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Interns merchant names into ids of the merchant dimension. Names as written map to ids through an in-memory
+ * cache, so ingestion only reaches the database the first time a spelling is seen. Unknown merchants are created
+ * in the caller's write transaction, which needs no second connection, and an id created that way is only cached
+ * once it is read back after commit, so a rolled-back write never leaves a cached id pointing nowhere. Names that
+ * are looked up but unknown are remembered for {@code expense.merchant.unknown-ttl}.
+ */
+@Service
+public class MerchantDictionary {
+    @Autowired
+    private MerchantRepository merchantRepository;
+    @Autowired
+    private MerchantNormalizer normalizer;
+    @Value("${expense.merchant.cache-size:100000}")
+    private long cacheSize;
+    @Value("${expense.merchant.unknown-ttl:PT1M}")
+    private Duration unknownTtl;
+
+    private Cache<String, Integer> idsByName;
+    private Cache<Integer, String> namesById;
+    private Cache<String, Boolean> unknownNames;
+    private volatile boolean backfilled;
+
+    @PostConstruct
+    void init(){
+        idsByName = Caffeine.newBuilder().maximumSize(cacheSize).build();
+        namesById = Caffeine.newBuilder().maximumSize(cacheSize).build();
+        unknownNames = Caffeine.newBuilder().maximumSize(cacheSize).expireAfterWrite(unknownTtl).build();
+    }
+
+    /** Id of the merchant, created on first sight; null for a blank name. Must run in a write transaction. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Integer idOf(String merchant){
+        if(Strings.isBlank(merchant)){
+            return null;
+        }
+        Integer id = idsByName.getIfPresent(merchant);
+        if(id != null){
+            return id;
+        }
+        String key = normalizer.key(merchant);
+        CreatedMerchants created = (CreatedMerchants) TransactionSynchronizationManager.getResource(this);
+        if(created != null && created.idsByKey.containsKey(key)){
+            return created.idsByKey.get(key);
+        }
+        // Rows this transaction did not create are committed, so their ids can be cached right away
+        Optional<Merchant> found = merchantRepository.findByCanonicalKey(key);
+        if(found.isPresent()){
+            id = found.get().getId();
+        }else if(merchantRepository.insertIgnore(key, normalizer.canonicalName(merchant)) == 1){
+            id = merchantRepository.findByCanonicalKey(key).orElseThrow().getId();
+            createdInTransaction().idsByKey.put(key, id);
+            return id;
+        }else{
+            id = merchantRepository.lockIdByCanonicalKey(key).orElseThrow();
+        }
+        idsByName.put(merchant, id);
+        unknownNames.invalidate(merchant);
+        return id;
+    }
+
+    private CreatedMerchants createdInTransaction(){
+        CreatedMerchants created = (CreatedMerchants) TransactionSynchronizationManager.getResource(this);
+        if(created == null){
+            created = new CreatedMerchants();
+            TransactionSynchronizationManager.bindResource(this, created);
+            TransactionSynchronizationManager.registerSynchronization(created);
+        }
+        return created;
+    }
+
+    /** Merchants inserted by the current transaction, keyed by canonical key; hidden from transactions nested in it. */
+    private final class CreatedMerchants implements TransactionSynchronization {
+        private final Map<String, Integer> idsByKey = new HashMap<>();
+
+        @Override
+        public void suspend(){
+            TransactionSynchronizationManager.unbindResource(MerchantDictionary.this);
+        }
+
+        @Override
+        public void resume(){
+            TransactionSynchronizationManager.bindResource(MerchantDictionary.this, this);
+        }
+
+        @Override
+        public void afterCompletion(int status){
+            TransactionSynchronizationManager.unbindResourceIfPossible(MerchantDictionary.this);
+        }
+    }
+
+    /**
+     * Resolves the batch's distinct merchant names in canonical-key order before assigning ids, so two transactions
+     * creating the same merchants take their row locks in the same order instead of deadlocking on each other.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void assignIds(Collection<Expense> expenses){
+        Map<String, Integer> ids = new HashMap<>();
+        TreeMap<String, Set<String>> unresolved = new TreeMap<>();
+        for (Expense expense : expenses) {
+            String merchant = expense.getMerchant();
+            if(Strings.isBlank(merchant) || ids.containsKey(merchant)){
+                continue;
+            }
+            Integer id = idsByName.getIfPresent(merchant);
+            if(id != null){
+                ids.put(merchant, id);
+            }else{
+                unresolved.computeIfAbsent(normalizer.key(merchant), key -> new TreeSet<>()).add(merchant);
+            }
+        }
+        for (Set<String> names : unresolved.values()) {
+            for (String merchant : names) {
+                ids.put(merchant, idOf(merchant));
+            }
+        }
+        for (Expense expense : expenses) {
+            expense.setMerchantId(Strings.isBlank(expense.getMerchant()) ? null : ids.get(expense.getMerchant()));
+        }
+    }
+
+    /** Id of an existing merchant, without creating it; read paths use this. */
+    public Optional<Integer> find(String merchant){
+        if(Strings.isBlank(merchant)){
+            return Optional.empty();
+        }
+        Integer id = idsByName.getIfPresent(merchant);
+        if(id != null){
+            return Optional.of(id);
+        }
+        if(unknownNames.getIfPresent(merchant) != null){
+            return Optional.empty();
+        }
+        Optional<Merchant> found = merchantRepository.findByCanonicalKey(normalizer.key(merchant));
+        if(found.isEmpty()){
+            unknownNames.put(merchant, Boolean.TRUE);
+            return Optional.empty();
+        }
+        idsByName.put(merchant, found.get().getId());
+        namesById.put(found.get().getId(), found.get().getName());
+        return Optional.of(found.get().getId());
+    }
+
+    public String nameOf(int id){
+        return namesById.get(id, key -> merchantRepository.findById(key).map(Merchant::getName).orElse(null));
+    }
+
+    /** Grouping key and label of an expense's merchant, from its id when it has one and from the name otherwise. */
+    public MerchantRef refOf(Integer merchantId, String merchant){
+        Integer id = Objects.nonNull(merchantId) ? merchantId : find(merchant).orElse(null);
+        if(Objects.nonNull(id)){
+            String name = nameOf(id);
+            return new MerchantRef("#" + id, Objects.nonNull(name) ? name : normalizer.canonicalName(merchant));
+        }
+        String key = normalizer.key(merchant);
+        return new MerchantRef(key, key.isEmpty() ? null : normalizer.canonicalName(merchant));
+    }
+
+    /** Canonical name of an expense's merchant; blank names are returned as they are. */
+    public String displayNameOf(Integer merchantId, String merchant){
+        if(Objects.isNull(merchantId) && Strings.isBlank(merchant)){
+            return merchant;
+        }
+        Integer id = Objects.nonNull(merchantId) ? merchantId : find(merchant).orElse(null);
+        String name = Objects.isNull(id) ? null : nameOf(id);
+        return Objects.nonNull(name) ? name : normalizer.canonicalName(merchant);
+    }
+
+    /** True once every expense written before this instance started has a merchant id, see MerchantBackfillJob. */
+    public boolean isBackfilled(){
+        return backfilled;
+    }
+
+    public void markBackfilled(){
+        backfilled = true;
+    }
+}
@@ -0,0 +1,87 @@
+package com.nifasat.expenseService.merchant;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Reduces free-text merchant names to a canonical key, so "AMAZON", "Amazon.in" and "amazon " are one merchant.
+ * Names are Unicode-normalized, whitespace is collapsed, punctuation at either end and the configured suffixes
+ * (domains, legal forms) are stripped, and the result is matched case-insensitively against the configured
+ * aliases. Immutable and thread-safe.
+ */
+public final class MerchantNormalizer {
+
+    private static final Pattern WHITESPACE = Pattern.compile("[\\s_]+");
+    private static final Pattern EDGE_PUNCTUATION = Pattern.compile("^[\\p{Punct}\\s]+|[\\p{Punct}\\s]+$");
+
+    private final List<String> suffixes;
+    private final Map<String, String> aliasNames = new HashMap<>();
+    private final Map<String, String> aliasKeys = new HashMap<>();
+
+    /**
+     * @param suffixes stripped repeatedly from the end of a name; those not starting with a dot only after a space
+     * @param aliases  merchant name to the canonical name it is an alias of
+     */
+    public MerchantNormalizer(Collection<String> suffixes, Map<String, String> aliases) {
+        List<String> sorted = new ArrayList<>();
+        for (String suffix : suffixes) {
+            String trimmed = suffix.trim().toLowerCase(Locale.ROOT);
+            if (!trimmed.isEmpty()) {
+                sorted.add(trimmed);
+            }
+        }
+        // Longest first, so ".co.in" wins over ".in"
+        sorted.sort(Comparator.comparingInt(String::length).reversed());
+        this.suffixes = List.copyOf(sorted);
+        aliases.forEach((alias, canonical) -> {
+            String name = clean(canonical);
+            aliasNames.put(clean(alias).toLowerCase(Locale.ROOT), name);
+            aliasKeys.put(clean(alias).toLowerCase(Locale.ROOT), name.toLowerCase(Locale.ROOT));
+        });
+    }
+
+    /** Case-insensitive identity of a merchant; empty for a blank name. */
+    public String key(String merchant) {
+        String cleaned = clean(merchant).toLowerCase(Locale.ROOT);
+        return aliasKeys.getOrDefault(cleaned, cleaned);
+    }
+
+    /** The name a merchant is recorded under when first seen as {@code merchant}: its alias target or the cleaned name. */
+    public String canonicalName(String merchant) {
+        String cleaned = clean(merchant);
+        return aliasNames.getOrDefault(cleaned.toLowerCase(Locale.ROOT), cleaned);
+    }
+
+    private String clean(String merchant) {
+        if (merchant == null) {
+            return "";
+        }
+        String name = WHITESPACE.matcher(Normalizer.normalize(merchant, Normalizer.Form.NFKC)).replaceAll(" ");
+        name = EDGE_PUNCTUATION.matcher(name).replaceAll("");
+        boolean stripped = true;
+        while (stripped) {
+            stripped = false;
+            String lower = name.toLowerCase(Locale.ROOT);
+            if (lower.length() != name.length()) {
+                // Lowercasing changed the length, so offsets into lower no longer line up with name
+                name = lower;
+            }
+            for (String suffix : suffixes) {
+                int start = lower.length() - suffix.length();
+                if (start > 0 && lower.endsWith(suffix) && (suffix.charAt(0) == '.' || lower.charAt(start - 1) == ' ')) {
+                    name = EDGE_PUNCTUATION.matcher(name.substring(0, start)).replaceAll("");
+                    stripped = !name.isEmpty();
+                    break;
+                }
+            }
+        }
+        return name;
+    }
+}
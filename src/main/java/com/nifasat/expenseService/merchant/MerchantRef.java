@@ -0,0 +1,8 @@
+package com.nifasat.expenseService.merchant;
+
+/**
+ * How aggregates group and label a merchant: {@code key} is the dimension id when the merchant is known and the
+ * normalized name otherwise; {@code name} is null for expenses without a merchant.
+ */
+public record MerchantRef(String key, String name) {
+}
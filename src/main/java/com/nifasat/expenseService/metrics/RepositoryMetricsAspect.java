@@ -0,0 +1,108 @@
+package com.nifasat.expenseService.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every repository call, covering both the query and entity hydration, as {@code expense.repository} tagged by
+ * repository and method, and records how many rows each call returned as {@code expense.repository.rows}.
+ * Meters are resolved once per repository method so the per-call cost is a map lookup and two records.
+ * Streams are timed up to the point the stream is opened and are not counted.
+ */
+@Aspect
+@Component
+public class RepositoryMetricsAspect {
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<MeterKey, Meters> meters = new ConcurrentHashMap<>();
+
+    public RepositoryMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(* org.springframework.data.repository.Repository+.*(..))"
+            + " || within(com.nifasat.expenseService.repository..*)")
+    public Object measure(ProceedingJoinPoint joinPoint) throws Throwable {
+        String method = joinPoint.getSignature().getName();
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable ex) {
+            Timer.builder("expense.repository")
+                    .tag("repository", repositoryName(joinPoint.getThis()))
+                    .tag("method", method)
+                    .tag("exception", ex.getClass().getSimpleName())
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw ex;
+        }
+        Meters methodMeters = meters.computeIfAbsent(new MeterKey(joinPoint.getThis().getClass(), method),
+                key -> register(repositoryName(joinPoint.getThis()), method));
+        methodMeters.timer().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        long rows = rowCount(result);
+        if (rows >= 0) {
+            methodMeters.rows().record(rows);
+        }
+        return result;
+    }
+
+    private Meters register(String repository, String method) {
+        Timer timer = Timer.builder("expense.repository")
+                .tag("repository", repository)
+                .tag("method", method)
+                .tag("exception", "none")
+                .register(meterRegistry);
+        DistributionSummary rows = DistributionSummary.builder("expense.repository.rows")
+                .baseUnit("rows")
+                .tag("repository", repository)
+                .tag("method", method)
+                .register(meterRegistry);
+        return new Meters(timer, rows);
+    }
+
+    private static long rowCount(Object result) {
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof Slice<?> slice) {
+            return slice.getNumberOfElements();
+        }
+        if (result instanceof Optional<?> optional) {
+            return optional.isPresent() ? 1 : 0;
+        }
+        return -1;
+    }
+
+    private static String repositoryName(Object proxy) {
+        // Spring Data proxies implement the repository interface; plain @Repository classes may be CGLIB subclasses
+        for (Class<?> type : ClassUtils.getAllInterfaces(proxy)) {
+            if (Repository.class.isAssignableFrom(type) && type != Repository.class
+                    && !type.getPackageName().startsWith("org.springframework")) {
+                return type.getSimpleName();
+            }
+        }
+        return ClassUtils.getUserClass(proxy).getSimpleName();
+    }
+
+    private record MeterKey(Class<?> repositoryType, String method) {
+    }
+
+    private record Meters(Timer timer, DistributionSummary rows) {
+    }
+}
@@ -0,0 +1,59 @@
+package com.nifasat.expenseService.money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+/**
+ * Fixed-point representation of monetary amounts: a {@code long} count of hundredths of the currency's major unit
+ * (paise for INR, cents for USD). Amounts are stored, summed and compared in this form so totals are exact; decimals
+ * only appear at the JSON and CSV edges. Currencies whose ISO 4217 exponent is above two (KWD, BHD, OMR...) do not
+ * fit and are rejected rather than silently truncated.
+ */
+public final class Amounts {
+
+    public static final int SCALE = 2;
+    private static final double FACTOR = 100.0;
+
+    private Amounts() {
+    }
+
+    /**
+     * Rounds a decimal amount to minor units, half up on the decimal the double prints as, so {@code 1.005} becomes
+     * {@code 101}; null stays null.
+     */
+    public static Long toMinor(Double amount) {
+        return amount == null ? null : BigDecimal.valueOf(amount).movePointRight(SCALE).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    /** Whether amounts in the currency fit hundredths; null and codes the JDK does not know are treated as two-decimal. */
+    public static boolean fits(String currency) {
+        if (currency == null) {
+            return true;
+        }
+        try {
+            return Currency.getInstance(currency).getDefaultFractionDigits() <= SCALE;
+        } catch (IllegalArgumentException ex) {
+            return true;
+        }
+    }
+
+    public static void requireFits(String currency) {
+        if (!fits(currency)) {
+            throw new IllegalArgumentException("Amounts in " + currency + " have more than " + SCALE + " decimals");
+        }
+    }
+
+    public static double toMajor(long amountMinor) {
+        return amountMinor / FACTOR;
+    }
+
+    public static Double toMajor(Long amountMinor) {
+        return amountMinor == null ? null : toMajor(amountMinor.longValue());
+    }
+
+    /** Exact decimal text of a minor amount, e.g. {@code 124950 -> "1249.50"}. */
+    public static String format(long amountMinor) {
+        return BigDecimal.valueOf(amountMinor, SCALE).toPlainString();
+    }
+}
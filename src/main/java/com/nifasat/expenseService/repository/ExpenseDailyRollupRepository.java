@@ -0,0 +1,42 @@
+package com.nifasat.expenseService.repository;
+
+import com.nifasat.expenseService.dto.ExpenseTotals;
+import com.nifasat.expenseService.entity.ExpenseDailyRollup;
+import com.nifasat.expenseService.entity.ExpenseDailyRollupId;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface ExpenseDailyRollupRepository extends CrudRepository<ExpenseDailyRollup, ExpenseDailyRollupId> {
+
+    List<ExpenseDailyRollup> findByIdUserIdAndIdDayBetween(String userId, LocalDate startDay, LocalDate endDay);
+
+    @Modifying
+    @Query(value = "INSERT INTO expense_daily_rollup (user_id, expense_day, merchant, currency, expense_count, total_amount_minor, max_amount_minor) "
+            + "VALUES (:userId, :day, :merchant, :currency, :count, :totalAmountMinor, :maxAmountMinor) "
+            + "ON DUPLICATE KEY UPDATE expense_count = expense_count + VALUES(expense_count), "
+            + "total_amount_minor = total_amount_minor + VALUES(total_amount_minor), "
+            + "max_amount_minor = GREATEST(max_amount_minor, VALUES(max_amount_minor))",
+            nativeQuery = true)
+    int increment(@Param("userId") String userId, @Param("day") LocalDate day, @Param("merchant") String merchant,
+                  @Param("currency") String currency, @Param("count") long count,
+                  @Param("totalAmountMinor") long totalAmountMinor, @Param("maxAmountMinor") long maxAmountMinor);
+
+    @Modifying
+    @Query("delete from ExpenseDailyRollup r where r.id.userId = :userId and r.id.day >= :fromDay and r.id.day <= :toDay")
+    int deleteDays(@Param("userId") String userId, @Param("fromDay") LocalDate fromDay, @Param("toDay") LocalDate toDay);
+
+    @Modifying
+    @Query("delete from ExpenseDailyRollup r where r.id.userId = :userId")
+    int deleteByUserId(@Param("userId") String userId);
+
+    @Query("select coalesce(sum(r.count), 0) as expenseCount, coalesce(sum(r.totalAmountMinor), 0) as totalAmountMinor "
+            + "from ExpenseDailyRollup r where r.id.userId = :userId and r.id.day >= :fromDay")
+    ExpenseTotals totalsByUserIdSince(@Param("userId") String userId, @Param("fromDay") LocalDate fromDay);
+}
@@ -0,0 +1,78 @@
+package com.nifasat.expenseService.repository;
+
+import com.nifasat.expenseService.entity.Expense;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.stream.Stream;
+
+/**
+ * Streams export rows over a small pool of its own. On MySQL its connections set {@code useCursorFetch}, so the
+ * positive fetch size is served from a server-side cursor and memory stays flat however long the history is; the
+ * shared pool keeps client-side prepared statements and the rewritten batch inserts.
+ */
+@Repository
+public class ExpenseExportRepository {
+    private static final String EXPORT_SQL = "SELECT id, external_id, user_id, amount_minor, currency, merchant, merchant_id, created_at "
+            + "FROM expense WHERE user_id = ? AND created_at BETWEEN ? AND ? ORDER BY created_at, id";
+    private static final int FETCH_SIZE = 500;
+
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+    @Value("${expense.export.max-connections:4}")
+    private int maxConnections;
+    @Value("${spring.datasource.hikari.connection-timeout:30000}")
+    private long connectionTimeout;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    void open(){
+        dataSource = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(cursorFetchUrl(dataSourceProperties.determineUrl()))
+                .build();
+        dataSource.setPoolName("export");
+        dataSource.setMaximumPoolSize(maxConnections);
+        dataSource.setConnectionTimeout(connectionTimeout);
+        dataSource.setReadOnly(true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(FETCH_SIZE);
+    }
+
+    @PreDestroy
+    void close(){
+        dataSource.close();
+    }
+
+    /** Ordered by (createdAt, id); the stream holds an export connection until it is closed. */
+    public Stream<Expense> streamByUserIdAndCreatedAtBetween(String userId, Date startTime, Date endTime){
+        return jdbcTemplate.queryForStream(EXPORT_SQL, (rs, rowNum) -> Expense.builder()
+                        .id(rs.getLong("id"))
+                        .externalId(rs.getString("external_id"))
+                        .userId(rs.getString("user_id"))
+                        .amountMinor(rs.getObject("amount_minor", Long.class))
+                        .currency(rs.getString("currency"))
+                        .merchant(rs.getString("merchant"))
+                        .merchantId(rs.getObject("merchant_id", Integer.class))
+                        .createdAt(rs.getTimestamp("created_at"))
+                        .build(),
+                userId, new Timestamp(startTime.getTime()), new Timestamp(endTime.getTime()));
+    }
+
+    static String cursorFetchUrl(String url){
+        if(!url.startsWith("jdbc:mysql:")){
+            return url;
+        }
+        return url + (url.indexOf('?') < 0 ? '?' : '&') + "useCursorFetch=true";
+    }
+}
@@ -1,18 +1,108 @@
 package com.nifasat.expenseService.repository;
 
+import com.nifasat.expenseService.dto.ExpenseDayGroup;
+import com.nifasat.expenseService.dto.ExpenseHistoryBounds;
+import com.nifasat.expenseService.dto.ExpenseTotals;
+import com.nifasat.expenseService.dto.MerchantDayGroup;
 import com.nifasat.expenseService.entity.Expense;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface ExpenseRepository extends CrudRepository<Expense, Long> {
     List<Expense> findByUserId(String userId);
     List<Expense> findByUserIdAndCreatedAtBetween(String userId, Date startTime, Date endTime);
     List<Expense> findByUserIdAndMerchantAndCreatedAtBetween(String userId, String merchant, Date startTime, Date endTime);
+    List<Expense> findByUserIdAndMerchantIdAndCreatedAtBetween(String userId, Integer merchantId, Date startTime, Date endTime);
     Optional<Expense> findByUserIdAndExternalId(String userId, String externalId);
-    Integer deleteByExternalId(String externalId);
+    List<Expense> findByUserIdAndExternalIdIn(String userId, Collection<String> externalIds);
+    // Keyset pagination on (created_at, id): each page seeks past the last row of the previous one
+    @Query("select e from Expense e where e.userId = :userId and e.createdAt between :startTime and :endTime "
+            + "and (e.createdAt > :afterCreatedAt or (e.createdAt = :afterCreatedAt and e.id > :afterId)) "
+            + "order by e.createdAt, e.id")
+    List<Expense> findPageAfter(@Param("userId") String userId, @Param("startTime") Date startTime, @Param("endTime") Date endTime,
+                                @Param("afterCreatedAt") Date afterCreatedAt, @Param("afterId") Long afterId, Limit limit);
+
+    @Query("select e from Expense e where e.userId = :userId and e.merchant = :merchant and e.createdAt between :startTime and :endTime "
+            + "and (e.createdAt > :afterCreatedAt or (e.createdAt = :afterCreatedAt and e.id > :afterId)) "
+            + "order by e.createdAt, e.id")
+    List<Expense> findMerchantPageAfter(@Param("userId") String userId, @Param("merchant") String merchant,
+                                        @Param("startTime") Date startTime, @Param("endTime") Date endTime,
+                                        @Param("afterCreatedAt") Date afterCreatedAt, @Param("afterId") Long afterId, Limit limit);
+
+    @Query("select e from Expense e where e.userId = :userId and e.merchantId = :merchantId and e.createdAt between :startTime and :endTime "
+            + "and (e.createdAt > :afterCreatedAt or (e.createdAt = :afterCreatedAt and e.id > :afterId)) "
+            + "order by e.createdAt, e.id")
+    List<Expense> findMerchantIdPageAfter(@Param("userId") String userId, @Param("merchantId") Integer merchantId,
+                                          @Param("startTime") Date startTime, @Param("endTime") Date endTime,
+                                          @Param("afterCreatedAt") Date afterCreatedAt, @Param("afterId") Long afterId, Limit limit);
+
+    // (id, merchant) of rows written before the merchant dimension existed, in id order for MerchantBackfillJob
+    @Query("select e.id, e.merchant from Expense e where e.merchantId is null and e.id > :afterId order by e.id")
+    List<Object[]> findWithoutMerchantIdAfter(@Param("afterId") Long afterId, Limit limit);
+
+    Integer deleteByUserIdAndExternalId(String userId, String externalId);
+
+    @Modifying
+    @Query("delete from Expense e where e.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    // A locking read sees the latest committed values and holds off writers until the surrounding transaction ends
+    @Query(value = "SELECT * FROM expense WHERE id IN (:ids) FOR UPDATE", nativeQuery = true)
+    List<Expense> lockByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Half-open [startTime, endTime) so adjacent calendar days never share a row
+    @Query("select e from Expense e where e.userId = :userId and e.createdAt >= :startTime and e.createdAt < :endTime")
+    List<Expense> findByUserIdInRange(@Param("userId") String userId, @Param("startTime") Date startTime, @Param("endTime") Date endTime);
+
+    @Query("select distinct e.userId from Expense e")
+    List<String> findDistinctUserIds();
+
+    @Query("select count(e) as expenseCount, coalesce(sum(e.amountMinor), 0) as totalAmountMinor from Expense e "
+            + "where e.userId = :userId and e.createdAt >= :since")
+    ExpenseTotals totalsByUserIdSince(@Param("userId") String userId, @Param("since") Date since);
+
+    // Aggregating projections: the database groups the rows and only one row per bucket is hydrated
+    // (merchant id, merchant, currency, day) groups; the day is the server-zone date created_at was written in
+    @Query("select e.merchantId as merchantId, case when e.merchantId is null then e.merchant end as merchant, "
+            + "e.currency as currency, cast(e.createdAt as LocalDate) as day, "
+            + "count(e) as expenseCount, coalesce(sum(e.amountMinor), 0) as totalAmountMinor from Expense e "
+            + "where e.userId = :userId and e.createdAt between :startTime and :endTime "
+            + "group by e.merchantId, case when e.merchantId is null then e.merchant end, e.currency, cast(e.createdAt as LocalDate)")
+    List<MerchantDayGroup> summarizeByMerchantCurrencyAndDay(@Param("userId") String userId, @Param("startTime") Date startTime, @Param("endTime") Date endTime);
+
+    // (day, currency) groups in the caller's zone. created_at holds server-zone local time, so it is shifted from
+    // storedZone to zone; named zones need the MySQL time zone tables, without them CONVERT_TZ yields NULL.
+    // 719528 is TO_DAYS('1970-01-01'), which turns the day into an epoch day
+    @Query(value = "SELECT TO_DAYS(CONVERT_TZ(created_at, :storedZone, :zone)) - 719528 AS epochDay, currency AS currency, "
+            + "COUNT(*) AS expenseCount, COALESCE(SUM(amount_minor), 0) AS totalAmountMinor FROM expense "
+            + "WHERE user_id = :userId AND created_at BETWEEN :startTime AND :endTime "
+            + "GROUP BY TO_DAYS(CONVERT_TZ(created_at, :storedZone, :zone)), currency", nativeQuery = true)
+    List<ExpenseDayGroup> countByDayAndCurrency(@Param("userId") String userId, @Param("storedZone") String storedZone,
+                                                @Param("zone") String zone, @Param("startTime") Date startTime,
+                                                @Param("endTime") Date endTime);
+
+    @Query("select count(e) as expenseCount, min(e.createdAt) as firstCreatedAt, max(e.createdAt) as lastCreatedAt "
+            + "from Expense e where e.userId = :userId")
+    ExpenseHistoryBounds historyBoundsByUserId(@Param("userId") String userId);
+
+    // Only the columns the summary needs, streamed over a half-open [startTime, endTime) slice
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select e.id, e.createdAt, e.amountMinor, e.currency, e.merchant, e.merchantId from Expense e "
+            + "where e.userId = :userId and e.createdAt >= :startTime and e.createdAt < :endTime")
+    Stream<Object[]> streamSummaryRows(@Param("userId") String userId, @Param("startTime") Date startTime, @Param("endTime") Date endTime);
 }
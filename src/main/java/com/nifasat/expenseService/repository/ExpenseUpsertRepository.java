@@ -0,0 +1,81 @@
+package com.nifasat.expenseService.repository;
+
+import com.nifasat.expenseService.entity.Expense;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Idempotent writes keyed on the (user_id, external_id) unique constraint. A redelivered expense overwrites the
+ * mutable columns of the row it duplicates instead of inserting a second one, without reading first.
+ */
+@Repository
+public class ExpenseUpsertRepository {
+    private static final String UPSERT_SQL = "INSERT INTO expense (id, external_id, user_id, amount_minor, currency, merchant, merchant_id, created_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE amount_minor = VALUES(amount_minor), currency = VALUES(currency), merchant = VALUES(merchant), "
+            + "merchant_id = VALUES(merchant_id)";
+    private static final int BATCH_SIZE = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Must run inside a transaction. Ids are drawn from the same pooled expense_seq generator Hibernate uses, so
+     * rows written here and through JPA never collide; ids drawn for duplicates are simply skipped. Expenses that
+     * already carry an id (archived expenses written back) keep it. Returns the expenses that were inserted, i.e.
+     * whose id made it into the table, as opposed to updating an existing row.
+     */
+    public List<Expense> upsert(List<Expense> expenses){
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        IdentifierGenerator idGenerator = (IdentifierGenerator) session.getFactory().getMappingMetamodel()
+                .getEntityDescriptor(Expense.class).getGenerator();
+        for (Expense expense : expenses) {
+            if(expense.getId() == null){
+                expense.setId((Long) idGenerator.generate(session, expense));
+            }
+        }
+        jdbcTemplate.batchUpdate(UPSERT_SQL, expenses, BATCH_SIZE, (ps, expense) -> {
+            ps.setLong(1, expense.getId());
+            ps.setString(2, expense.getExternalId());
+            ps.setString(3, expense.getUserId());
+            ps.setObject(4, expense.getAmountMinor());
+            ps.setString(5, expense.getCurrency());
+            ps.setString(6, expense.getMerchant());
+            ps.setObject(7, expense.getMerchantId());
+            ps.setTimestamp(8, new Timestamp(expense.getCreatedAt().getTime()));
+        });
+        return inserted(expenses);
+    }
+
+    // Affected-row counts cannot tell inserts apart: rewritten batches report no info and an unchanged duplicate counts as 1
+    private List<Expense> inserted(List<Expense> expenses){
+        Set<Long> insertedIds = new HashSet<>();
+        for (int from = 0; from < expenses.size(); from += BATCH_SIZE) {
+            List<Expense> chunk = expenses.subList(from, Math.min(from + BATCH_SIZE, expenses.size()));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            insertedIds.addAll(jdbcTemplate.queryForList("SELECT id FROM expense WHERE id IN (" + placeholders + ")",
+                    Long.class, chunk.stream().map(Expense::getId).toArray()));
+        }
+        List<Expense> inserted = new ArrayList<>(insertedIds.size());
+        for (Expense expense : expenses) {
+            if(insertedIds.contains(expense.getId())){
+                inserted.add(expense);
+            }
+        }
+        return inserted;
+    }
+}
@@ -0,0 +1,24 @@
+package com.nifasat.expenseService.repository;
+
+import com.nifasat.expenseService.entity.Merchant;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface MerchantRepository extends CrudRepository<Merchant, Integer> {
+    Optional<Merchant> findByCanonicalKey(String canonicalKey);
+
+    // Concurrent first sightings of a merchant race on uk_merchant_canonical_key; the losers insert nothing
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO merchant (canonical_key, name) VALUES (:canonicalKey, :name)", nativeQuery = true)
+    int insertIgnore(@Param("canonicalKey") String canonicalKey, @Param("name") String name);
+
+    // A locking read sees the winner's row even when it committed after this transaction's snapshot
+    @Query(value = "SELECT id FROM merchant WHERE canonical_key = :canonicalKey FOR UPDATE", nativeQuery = true)
+    Optional<Integer> lockIdByCanonicalKey(@Param("canonicalKey") String canonicalKey);
+}
@@ -0,0 +1,289 @@
+package com.nifasat.expenseService.service;
+
+import com.nifasat.expenseService.archive.ExpenseArchiveStore;
+import com.nifasat.expenseService.dto.ExpenseHistoryBounds;
+import com.nifasat.expenseService.dto.ExpensePageCursor;
+import com.nifasat.expenseService.entity.Expense;
+import com.nifasat.expenseService.merchant.MerchantDictionary;
+import com.nifasat.expenseService.merchant.MerchantNormalizer;
+import com.nifasat.expenseService.repository.ExpenseRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/**
+ * Moves cold expenses from the expense table into the {@link ExpenseArchiveStore} and merges them back into reads
+ * whose range reaches archived months. A month is written to the archive before its rows are deleted, so a failure
+ * in between leaves rows in both places; reads drop the duplicates by id and the next run finishes the move. Rows
+ * are only deleted while they still hold the archived values, so a write racing the archiver stays in the table.
+ * An archived expense written again (a redelivery, or an upsert of its external id) re-enters the table under its
+ * archived id through {@link #adoptArchivedIds}, so it stays one expense rather than a second row beside the archive.
+ * Deleting an archived expense rewrites its month file through {@link #removeArchived}.
+ */
+@Service
+public class ExpenseArchiveService {
+    private static final int DELETE_CHUNK = 1000;
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+    @Autowired
+    private ExpenseArchiveStore archiveStore;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private MerchantDictionary merchantDictionary;
+    @Autowired
+    private MerchantNormalizer merchantNormalizer;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    void init(){
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Archives every month of the user's history before {@code cutoff}; returns the number of expenses moved. Rows
+     * changed after they were read are left in the table, where they shadow their archived copy until the next run.
+     */
+    public int archiveUser(String userId, YearMonth cutoff){
+        ExpenseHistoryBounds bounds = expenseRepository.historyBoundsByUserId(userId);
+        if (Objects.isNull(bounds.getFirstCreatedAt())) {
+            return 0;
+        }
+        int archived = 0;
+        for (YearMonth month = archiveStore.monthOf(bounds.getFirstCreatedAt()); month.isBefore(cutoff); month = month.plusMonths(1)) {
+            List<Expense> expenses = expenseRepository.findByUserIdInRange(userId, archiveStore.startOf(month),
+                    archiveStore.startOf(month.plusMonths(1)));
+            if (expenses.isEmpty()) {
+                continue;
+            }
+            archiveStore.append(userId, month, expenses);
+            Set<Long> vanished = new HashSet<>();
+            for (int from = 0; from < expenses.size(); from += DELETE_CHUNK) {
+                List<Expense> chunk = expenses.subList(from, Math.min(from + DELETE_CHUNK, expenses.size()));
+                archived += transactionTemplate.execute(status -> deleteUnchanged(chunk, vanished));
+            }
+            // Deleted after they were read, so the append above brought them back
+            if (!vanished.isEmpty()) {
+                archiveStore.remove(userId, month, vanished);
+            }
+        }
+        return archived;
+    }
+
+    // Locks the rows and deletes those whose mutable columns still match the archived copy; returns how many went and
+    // adds the ids of rows that are no longer in the table to vanished
+    private int deleteUnchanged(List<Expense> archived, Set<Long> vanished){
+        Map<Long, Expense> archivedById = new HashMap<>();
+        for (Expense expense : archived) {
+            archivedById.put(expense.getId(), expense);
+        }
+        List<Long> unchanged = new ArrayList<>(archived.size());
+        for (Expense current : expenseRepository.lockByIdIn(new ArrayList<>(archivedById.keySet()))) {
+            Expense expense = archivedById.get(current.getId());
+            if (Objects.equals(current.getAmountMinor(), expense.getAmountMinor())
+                    && Objects.equals(current.getCurrency(), expense.getCurrency())
+                    && Objects.equals(current.getMerchant(), expense.getMerchant())) {
+                unchanged.add(current.getId());
+            }
+            archivedById.remove(current.getId());
+        }
+        vanished.addAll(archivedById.keySet());
+        if (!unchanged.isEmpty()) {
+            expenseRepository.deleteByIdIn(unchanged);
+        }
+        return unchanged.size();
+    }
+
+    /**
+     * Gives each expense whose month is archived and whose (userId, externalId) the archive holds the archived id and
+     * createdAt, so the upsert writes the archived expense back instead of inserting a new one. Returns the expenses
+     * that matched; they update an existing expense and must not be counted as new.
+     */
+    public Set<Expense> adoptArchivedIds(List<Expense> expenses){
+        Set<Expense> adopted = Collections.newSetFromMap(new IdentityHashMap<>());
+        Map<String, Map<YearMonth, Map<String, Expense>>> archivedByUser = new HashMap<>();
+        for (Expense expense : expenses) {
+            if (Objects.isNull(expense.getCreatedAt()) || Objects.isNull(expense.getExternalId())
+                    || !archiveStore.reaches(expense.getUserId(), expense.getCreatedAt())) {
+                continue;
+            }
+            YearMonth month = archiveStore.monthOf(expense.getCreatedAt());
+            Expense archived = archivedByUser.computeIfAbsent(expense.getUserId(), userId -> new HashMap<>())
+                    .computeIfAbsent(month, key -> byExternalId(archiveStore.read(expense.getUserId(), key)))
+                    .get(expense.getExternalId());
+            if (Objects.nonNull(archived)) {
+                expense.setId(archived.getId());
+                expense.setCreatedAt(archived.getCreatedAt());
+                adopted.add(expense);
+            }
+        }
+        return adopted;
+    }
+
+    private static Map<String, Expense> byExternalId(List<Expense> expenses){
+        Map<String, Expense> byExternalId = new HashMap<>();
+        for (Expense expense : expenses) {
+            byExternalId.put(expense.getExternalId(), expense);
+        }
+        return byExternalId;
+    }
+
+    /**
+     * Adds the user's archived expenses within the inclusive range (and merchant, when given) to rows read from the
+     * expense table. Returns {@code hot} untouched when the range does not reach the archive.
+     */
+    public List<Expense> withArchived(String userId, String merchant, Date startTime, Date endTime, List<Expense> hot){
+        if (!archiveStore.reaches(userId, startTime)) {
+            return hot;
+        }
+        List<Expense> merged = new ArrayList<>(hot);
+        Set<Long> hotIds = new HashSet<>();
+        for (Expense expense : hot) {
+            hotIds.add(expense.getId());
+        }
+        Predicate<String> merchantFilter = merchantFilter(merchant);
+        for (Expense expense : archiveStore.read(userId, startTime, endTime)) {
+            if (merchantFilter.test(expense.getMerchant()) && !hotIds.contains(expense.getId())) {
+                merged.add(expense);
+            }
+        }
+        merged.sort(ExpenseArchiveStore.CHRONOLOGICAL);
+        return merged;
+    }
+
+    /** Archived months of the user overlapping the inclusive range, oldest first; a snapshot that later archiving leaves alone. */
+    public NavigableSet<YearMonth> archivedMonths(String userId, Date startTime, Date endTime){
+        if (!archiveStore.reaches(userId, startTime) || endTime.before(startTime)) {
+            return new TreeSet<>();
+        }
+        return new TreeSet<>(archiveStore.archivedMonths(userId)
+                .subSet(archiveStore.monthOf(startTime), true, archiveStore.monthOf(endTime), true));
+    }
+
+    /**
+     * One archived month's expenses within the inclusive range, with the rows the table holds again for that month in
+     * place of their archived copy, so the month is complete without reading the table for it.
+     */
+    public List<Expense> readMonth(String userId, YearMonth month, Date startTime, Date endTime){
+        Date monthStart = archiveStore.startOf(month);
+        Date monthEnd = new Date(archiveStore.startOf(month.plusMonths(1)).getTime() - 1);
+        Date start = startTime.after(monthStart) ? startTime : monthStart;
+        Date end = endTime.before(monthEnd) ? endTime : monthEnd;
+        return withArchived(userId, null, start, end, expenseRepository.findByUserIdAndCreatedAtBetween(userId, start, end));
+    }
+
+    public YearMonth monthOf(Date date){
+        return archiveStore.monthOf(date);
+    }
+
+    /** Like {@link #withArchived} for one keyset page: archived rows after the cursor are merged in and the result trimmed to {@code limit}. */
+    public List<Expense> pageWithArchived(String userId, String merchant, Date startTime, Date endTime, ExpensePageCursor after,
+                                          int limit, List<Expense> hot){
+        Date from = after.getCreatedAt().after(startTime) ? after.getCreatedAt() : startTime;
+        if (!archiveStore.reaches(userId, from)) {
+            return hot;
+        }
+        List<Expense> candidates = new ArrayList<>(hot);
+        Set<Long> hotIds = new HashSet<>();
+        for (Expense expense : hot) {
+            hotIds.add(expense.getId());
+        }
+        Predicate<String> merchantFilter = merchantFilter(merchant);
+        for (Expense expense : archiveStore.read(userId, from, endTime)) {
+            boolean afterCursor = expense.getCreatedAt().after(after.getCreatedAt())
+                    || (expense.getCreatedAt().equals(after.getCreatedAt()) && expense.getId() > after.getId());
+            if (afterCursor && merchantFilter.test(expense.getMerchant()) && !hotIds.contains(expense.getId())) {
+                candidates.add(expense);
+            }
+        }
+        candidates.sort(ExpenseArchiveStore.CHRONOLOGICAL);
+        return candidates.size() > limit ? new ArrayList<>(candidates.subList(0, limit)) : candidates;
+    }
+
+    // Archived rows carry no merchant id; once the table is filtered by id, match them by normalized name the same way
+    private Predicate<String> merchantFilter(String merchant){
+        if (Objects.isNull(merchant)) {
+            return name -> true;
+        }
+        if (!merchantDictionary.isBackfilled()) {
+            return merchant::equals;
+        }
+        String key = merchantNormalizer.key(merchant);
+        return name -> key.equals(merchantNormalizer.key(name));
+    }
+
+    /**
+     * Archived expenses of the user with the given external ids, searching the newest months first and stopping once
+     * all are found. Reads month files, so it is only meant for ids the expense table does not hold.
+     */
+    public List<Expense> findArchived(String userId, Collection<String> externalIds){
+        List<Expense> found = new ArrayList<>();
+        Set<String> missing = new HashSet<>(externalIds);
+        for (YearMonth month : archiveStore.archivedMonths(userId).descendingSet()) {
+            if (missing.isEmpty()) {
+                break;
+            }
+            for (Expense expense : archiveStore.read(userId, month)) {
+                if (missing.remove(expense.getExternalId())) {
+                    found.add(expense);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Drops the expenses from the archived months holding them, so a deleted expense no longer shows through reads,
+     * the rollup or the summary. Returns how many the archive held.
+     */
+    public int removeArchived(String userId, Collection<Expense> expenses){
+        NavigableSet<YearMonth> archivedMonths = archiveStore.archivedMonths(userId);
+        Map<YearMonth, Set<Long>> idsByMonth = new HashMap<>();
+        for (Expense expense : expenses) {
+            if (Objects.isNull(expense.getCreatedAt())) {
+                continue;
+            }
+            YearMonth month = archiveStore.monthOf(expense.getCreatedAt());
+            if (archivedMonths.contains(month)) {
+                idsByMonth.computeIfAbsent(month, key -> new HashSet<>()).add(expense.getId());
+            }
+        }
+        int removed = 0;
+        for (Map.Entry<YearMonth, Set<Long>> entry : idsByMonth.entrySet()) {
+            removed += archiveStore.remove(userId, entry.getKey(), entry.getValue());
+        }
+        return removed;
+    }
+
+    public Optional<Expense> findArchived(String userId, long id){
+        for (YearMonth month : archiveStore.archivedMonths(userId)) {
+            for (Expense expense : archiveStore.read(userId, month)) {
+                if (expense.getId() == id) {
+                    return Optional.of(expense);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,200 @@
+package com.nifasat.expenseService.service;
+
+import com.nifasat.expenseService.archive.ExpenseArchiveStore;
+import com.nifasat.expenseService.dto.ExpenseTotals;
+import com.nifasat.expenseService.entity.Expense;
+import com.nifasat.expenseService.entity.ExpenseDailyRollup;
+import com.nifasat.expenseService.entity.ExpenseDailyRollupId;
+import com.nifasat.expenseService.repository.ExpenseDailyRollupRepository;
+import com.nifasat.expenseService.repository.ExpenseRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Maintains {@link ExpenseDailyRollup} alongside the raw expense table. Inserts are applied as atomic increments;
+ * updates and deletes recompute the affected user day from the raw rows, since a max cannot be decremented.
+ */
+@Service
+public class ExpenseRollupService {
+    private static final Date EPOCH = new Date(0);
+    private static final Date LATEST = Date.from(Instant.parse("9999-12-31T23:59:59.999Z"));
+    @Autowired
+    private ExpenseRepository expenseRepository;
+    @Autowired
+    private ExpenseDailyRollupRepository rollupRepository;
+    @Autowired
+    private ExpenseArchiveStore archiveStore;
+    @Value("${expense.rollup.enabled:true}")
+    private boolean enabled;
+    private final ZoneId zoneId = ZoneId.systemDefault();
+
+    public boolean isEnabled(){
+        return enabled;
+    }
+
+    /** Zone whose calendar days the rollup rows are keyed by. */
+    public ZoneId getZoneId(){
+        return zoneId;
+    }
+
+    public LocalDate dayOf(Date date){
+        return date.toInstant().atZone(zoneId).toLocalDate();
+    }
+
+    @Transactional
+    public void recordCreated(Iterable<Expense> expenses){
+        if(!enabled){
+            return;
+        }
+        for (ExpenseDailyRollup rollup : groupByDay(expenses).values()) {
+            increment(rollup);
+        }
+    }
+
+    @Transactional
+    public void refreshDay(String userId, LocalDate day){
+        if(!enabled){
+            return;
+        }
+        refreshRange(userId, day, day);
+    }
+
+    /**
+     * Recomputes the given days of each user from the raw rows. Runs of consecutive days share one delete and one
+     * range query.
+     */
+    @Transactional
+    public void refreshDays(Map<String, Set<LocalDate>> daysByUser){
+        if(!enabled){
+            return;
+        }
+        daysByUser.forEach((userId, days) -> {
+            LocalDate runStart = null;
+            LocalDate previous = null;
+            for (LocalDate day : new TreeSet<>(days)) {
+                if(Objects.nonNull(previous) && !day.equals(previous.plusDays(1))){
+                    refreshRange(userId, runStart, previous);
+                    runStart = null;
+                }
+                if(Objects.isNull(runStart)){
+                    runStart = day;
+                }
+                previous = day;
+            }
+            if(Objects.nonNull(runStart)){
+                refreshRange(userId, runStart, previous);
+            }
+        });
+    }
+
+    @Transactional
+    public void rebuildUser(String userId){
+        rollupRepository.deleteByUserId(userId);
+        List<Expense> expenses = expenseRepository.findByUserId(userId);
+        for (ExpenseDailyRollup rollup : groupByDay(withArchived(userId, expenses, EPOCH, LATEST)).values()) {
+            increment(rollup);
+        }
+    }
+
+    /**
+     * Compares the rollup with the expense table for the days the table is authoritative for, i.e. from the end of
+     * the user's archived months on; archived days are frozen in the rollup.
+     */
+    public boolean isConsistent(String userId){
+        Date since = Objects.requireNonNullElse(archiveStore.archivedUntil(userId), EPOCH);
+        ExpenseTotals raw = expenseRepository.totalsByUserIdSince(userId, since);
+        ExpenseTotals rolledUp = rollupRepository.totalsByUserIdSince(userId, dayOf(since));
+        return Objects.equals(raw.getExpenseCount(), rolledUp.getExpenseCount())
+                && Objects.equals(raw.getTotalAmountMinor(), rolledUp.getTotalAmountMinor());
+    }
+
+    /**
+     * Day level aggregates for an inclusive time range: whole days come from the rollup table and the partial
+     * days at either end are grouped from the raw rows.
+     */
+    public List<ExpenseDailyRollup> aggregateRange(String userId, Date startTime, Date endTime){
+        LocalDate firstDay = dayOf(startTime);
+        LocalDate lastDay = dayOf(endTime);
+        LocalDate firstFullDay = startOf(firstDay).equals(startTime) ? firstDay : firstDay.plusDays(1);
+        LocalDate lastFullDay = startOf(lastDay.plusDays(1)).getTime() - 1 == endTime.getTime() ? lastDay : lastDay.minusDays(1);
+        if(firstFullDay.isAfter(lastFullDay)){
+            return new ArrayList<>(groupByDay(expenseRepository.findByUserIdAndCreatedAtBetween(userId, startTime, endTime)).values());
+        }
+
+        List<ExpenseDailyRollup> rollups = new ArrayList<>(rollupRepository.findByIdUserIdAndIdDayBetween(userId, firstFullDay, lastFullDay));
+        Date fullDaysStart = startOf(firstFullDay);
+        Date fullDaysEnd = startOf(lastFullDay.plusDays(1));
+        if(startTime.before(fullDaysStart)){
+            rollups.addAll(groupByDay(expenseRepository.findByUserIdInRange(userId, startTime, fullDaysStart)).values());
+        }
+        if(!endTime.before(fullDaysEnd)){
+            rollups.addAll(groupByDay(expenseRepository.findByUserIdAndCreatedAtBetween(userId, fullDaysEnd, endTime)).values());
+        }
+        return rollups;
+    }
+
+    private void refreshRange(String userId, LocalDate firstDay, LocalDate lastDay){
+        rollupRepository.deleteDays(userId, firstDay, lastDay);
+        Date start = startOf(firstDay);
+        Date end = startOf(lastDay.plusDays(1));
+        List<Expense> expenses = withArchived(userId, expenseRepository.findByUserIdInRange(userId, start, end), start, end);
+        for (ExpenseDailyRollup rollup : groupByDay(expenses).values()) {
+            increment(rollup);
+        }
+    }
+
+    // Archived rows in [start, end) that the table no longer (or not yet only) holds, so archived days keep their totals
+    private List<Expense> withArchived(String userId, List<Expense> expenses, Date start, Date end){
+        if(!archiveStore.reaches(userId, start)){
+            return expenses;
+        }
+        Set<Long> ids = new HashSet<>();
+        for (Expense expense : expenses) {
+            ids.add(expense.getId());
+        }
+        List<Expense> merged = new ArrayList<>(expenses);
+        for (Expense expense : archiveStore.read(userId, start, new Date(end.getTime() - 1))) {
+            if(ids.add(expense.getId())){
+                merged.add(expense);
+            }
+        }
+        return merged;
+    }
+
+    private Date startOf(LocalDate day){
+        return Date.from(day.atStartOfDay(zoneId).toInstant());
+    }
+
+    private void increment(ExpenseDailyRollup rollup){
+        ExpenseDailyRollupId id = rollup.getId();
+        rollupRepository.increment(id.getUserId(), id.getDay(), id.getMerchant(), id.getCurrency(),
+                rollup.getCount(), rollup.getTotalAmountMinor(), rollup.getMaxAmountMinor());
+    }
+
+    private Map<ExpenseDailyRollupId, ExpenseDailyRollup> groupByDay(Iterable<Expense> expenses){
+        Map<ExpenseDailyRollupId, ExpenseDailyRollup> rollups = new HashMap<>();
+        for (Expense expense : expenses) {
+            Date createdAt = Objects.isNull(expense.getCreatedAt()) ? new Date() : expense.getCreatedAt();
+            ExpenseDailyRollupId id = new ExpenseDailyRollupId(expense.getUserId(), dayOf(createdAt),
+                    Objects.toString(expense.getMerchant(), ""), Objects.toString(expense.getCurrency(), ""));
+            rollups.computeIfAbsent(id, key -> new ExpenseDailyRollup(key, 0, 0, 0))
+                    .add(Objects.isNull(expense.getAmountMinor()) ? 0 : expense.getAmountMinor());
+        }
+        return rollups;
+    }
+}
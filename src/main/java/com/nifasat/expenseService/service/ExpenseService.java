@@ -1,206 +1,716 @@
 package com.nifasat.expenseService.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.nifasat.expenseService.bucketing.TimeBucketAccumulator;
+import com.nifasat.expenseService.bucketing.Timeframe;
+import com.nifasat.expenseService.cache.ExpenseSummaryCache;
+import com.nifasat.expenseService.datasource.ReadYourWritesTracker;
+import com.nifasat.expenseService.dto.ExpenseBatchResultDTO;
 import com.nifasat.expenseService.dto.ExpenseCountDTO;
+import com.nifasat.expenseService.dto.ExpenseDayGroup;
 import com.nifasat.expenseService.dto.ExpenseDto;
+import com.nifasat.expenseService.dto.ExpensePage;
+import com.nifasat.expenseService.dto.ExpensePageCursor;
+import com.nifasat.expenseService.dto.MerchantDayGroup;
 import com.nifasat.expenseService.dto.MerchantSummaryDTO;
 import com.nifasat.expenseService.entity.Expense;
+import com.nifasat.expenseService.entity.ExpenseDailyRollup;
+import com.nifasat.expenseService.fx.FxRateTable;
+import com.nifasat.expenseService.fx.FxRates;
+import com.nifasat.expenseService.live.ExpenseChangeEvent;
+import com.nifasat.expenseService.mapper.ExpenseMapper;
+import com.nifasat.expenseService.merchant.MerchantDictionary;
+import com.nifasat.expenseService.merchant.MerchantRef;
+import com.nifasat.expenseService.money.Amounts;
+import com.nifasat.expenseService.repository.ExpenseExportRepository;
 import com.nifasat.expenseService.repository.ExpenseRepository;
-import jakarta.transaction.Transactional;
+import com.nifasat.expenseService.repository.ExpenseUpsertRepository;
+import com.nifasat.expenseService.summary.ExpenseSummaryAccumulator;
+import io.micrometer.core.annotation.Timed;
 import org.apache.logging.log4j.util.Strings;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.reflect.Type;
-import java.text.SimpleDateFormat;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
+@Timed("expense.service")
 public class ExpenseService {
+    private static final Date EARLIEST = new Date(0);
+    private static final Date LATEST = Date.from(Instant.parse("9999-12-31T23:59:59.999Z"));
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
     @Autowired
     private ExpenseRepository expenseRepository;
-    private ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private ExpenseUpsertRepository expenseUpsertRepository;
+    @Autowired
+    private ExpenseExportRepository expenseExportRepository;
+    @Autowired
+    private ExpenseRollupService rollupService;
+    @Autowired
+    private ExpenseMapper expenseMapper;
+    @Autowired
+    private ExpenseSummaryCache summaryCache;
+    @Autowired
+    private ExpenseSummaryService expenseSummaryService;
+    @Autowired
+    private ReadYourWritesTracker readYourWritesTracker;
+    @Autowired
+    private ExpenseArchiveService archiveService;
+    @Autowired
+    private FxRateTable fxRateTable;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private MerchantDictionary merchantDictionary;
+    private ObjectWriter expenseWriter = new ObjectMapper().writerFor(ExpenseDto.class);
+    /** Failures propagate so the whole transaction rolls back; the controller maps them to a response. */
+    @Transactional
     public boolean createExpense(ExpenseDto expenseDto){
-        setCurrency(expenseDto);
-        try{
-            expenseRepository.save(objectMapper.convertValue(expenseDto, Expense.class));
-            return true;
-        }catch(Exception ex){
-            return false;
+        upsertExpenses(List.of(expenseDto));
+        return true;
+    }
+
+    /**
+     * Persists a whole batch in one transaction as batched upserts, so redelivered records overwrite the row they
+     * duplicate. Failures are rethrown so the Kafka error handler can retry or dead-letter the batch.
+     */
+    @Transactional
+    public void createExpenses(List<ExpenseDto> expenseDtos){
+        if(expenseDtos.isEmpty()){
+            return;
+        }
+        upsertExpenses(expenseDtos);
+    }
+
+    /** Expenses as written, in input order, and which of them were inserted rather than overwriting an existing row. */
+    private record Upserted(List<Expense> expenses, Set<Expense> inserted) {
+    }
+
+    private Upserted upsertExpenses(List<ExpenseDto> expenseDtos){
+        List<Expense> expenses = new ArrayList<>(expenseDtos.size());
+        Map<String, List<Expense>> expensesByUser = new HashMap<>();
+        for (ExpenseDto expenseDto : expenseDtos) {
+            setCurrency(expenseDto);
+            if(Strings.isBlank(expenseDto.getExternalId())){
+                expenseDto.setExternalId(expenseMapper.deriveExternalId(expenseDto));
+            }
+            setCreatedAt(expenseDto);
+            Expense expense = expenseMapper.toEntity(expenseDto);
+            expenses.add(expense);
+            expensesByUser.computeIfAbsent(expense.getUserId(), userId -> new ArrayList<>()).add(expense);
+        }
+        merchantDictionary.assignIds(expenses);
+        Set<Expense> rearchived = archiveService.adoptArchivedIds(expenses);
+        List<Expense> inserted = expenseUpsertRepository.upsert(expenses);
+        // Archived expenses written back are already counted in their day, they are refreshed like updates
+        inserted.removeIf(rearchived::contains);
+        // New rows are counted as increments; only the days of rows that already existed are recomputed
+        rollupService.recordCreated(inserted);
+        Set<Expense> insertedExpenses = Collections.newSetFromMap(new IdentityHashMap<>());
+        insertedExpenses.addAll(inserted);
+        if(inserted.size() < expenses.size()){
+            rollupService.refreshDays(updatedDays(expensesByUser, insertedExpenses));
         }
+        expensesByUser.keySet().forEach(this::afterWrite);
+        expensesByUser.forEach((userId, written) -> publishChanges(userId, written, List.of()));
+        return new Upserted(expenses, insertedExpenses);
     }
+
+    // Days of the stored rows the upsert updated; created_at is not overwritten, so they may differ from the incoming day
+    private Map<String, Set<LocalDate>> updatedDays(Map<String, List<Expense>> expensesByUser, Set<Expense> inserted){
+        Map<String, Set<LocalDate>> updatedDays = new HashMap<>();
+        expensesByUser.forEach((userId, written) -> {
+            Set<String> externalIds = new HashSet<>();
+            for (Expense expense : written) {
+                if(!inserted.contains(expense)){
+                    externalIds.add(expense.getExternalId());
+                }
+            }
+            if(!externalIds.isEmpty()){
+                for (Expense stored : expenseRepository.findByUserIdAndExternalIdIn(userId, externalIds)) {
+                    updatedDays.computeIfAbsent(userId, key -> new HashSet<>()).add(rollupService.dayOf(stored.getCreatedAt()));
+                }
+            }
+        });
+        return updatedDays;
+    }
+    /**
+     * Updates an expense of the table or the archive. An archived expense goes back into the table under its archived
+     * id, where it shadows the archived copy until the next archive run moves it out again.
+     */
+    @Transactional
     public boolean updateExpense(ExpenseDto expenseDto){
-        Optional<Expense> foundExpense = expenseRepository.findByUserIdAndExternalId(expenseDto.getUserId(), expenseDto.getExternalId());
+        Optional<Expense> storedExpense = expenseRepository.findByUserIdAndExternalId(expenseDto.getUserId(), expenseDto.getExternalId());
+        Optional<Expense> foundExpense = storedExpense.isPresent() ? storedExpense
+                : findArchived(expenseDto.getUserId(), expenseDto.getExternalId());
         return foundExpense
                 .map(expense -> {
                     expense.setCurrency(Strings.isNotBlank(expenseDto.getCurrency())? expenseDto.getCurrency(): expense.getCurrency());
                     expense.setMerchant(Strings.isNotBlank(expenseDto.getMerchant())? expenseDto.getMerchant(): expense.getMerchant());
-                    expense.setAmount(expenseDto.getAmount());
-                    expenseRepository.save(expense);
+                    expense.setMerchantId(merchantDictionary.idOf(expense.getMerchant()));
+                    expense.setAmountMinor(expenseMapper.amountMinorOf(expenseDto));
+                    if(storedExpense.isPresent()){
+                        expenseRepository.save(expense);
+                    }else{
+                        expenseUpsertRepository.upsert(List.of(expense));
+                    }
+                    rollupService.refreshDay(expense.getUserId(), rollupService.dayOf(expense.getCreatedAt()));
+                    afterWrite(expense.getUserId());
+                    publishChanges(expense.getUserId(), List.of(expense), List.of());
                     return true;
                 }).orElse(false);
     }
+    @Transactional(readOnly = true)
     public List<ExpenseDto> getExpenses(String userId){
-        List<Expense>expenseList = expenseRepository.findByUserId(userId);
-        return objectMapper.convertValue(expenseList, new TypeReference<List<ExpenseDto>>() {});
+        List<Expense>expenseList = archiveService.withArchived(userId, null, EARLIEST, LATEST, expenseRepository.findByUserId(userId));
+        return expenseMapper.toDtos(expenseList);
     }
+    @Transactional(readOnly = true)
     public List<ExpenseDto> getTimeBasedExpense(String userId, Long startDateLong, Long endDateLong){
         Date startDate = new Date(startDateLong);
         Date endDate = new Date(endDateLong);
-        List<Expense>expenseList = expenseRepository.findByUserIdAndCreatedAtBetween(userId, startDate, endDate);
-        return objectMapper.convertValue(expenseList, new TypeReference<List<ExpenseDto>>() {});
+        List<Expense>expenseList = archiveService.withArchived(userId, null, startDate, endDate,
+                expenseRepository.findByUserIdAndCreatedAtBetween(userId, startDate, endDate));
+        return expenseMapper.toDtos(expenseList);
     }
 
+    @Transactional(readOnly = true)
     public List<ExpenseDto> getTimeAndMerchantBasedExpense(String userId, String merchant, Long startDateLong, Long endDateLong){
         Date startDate = new Date(startDateLong);
         Date endDate = new Date(endDateLong);
-        List<Expense>expenseList = expenseRepository.findByUserIdAndMerchantAndCreatedAtBetween(userId, merchant, startDate, endDate);
-        return objectMapper.convertValue(expenseList, new TypeReference<List<ExpenseDto>>(){});
+        Optional<Integer> merchantId = merchantIdFilter(merchant);
+        List<Expense> hot = merchantId.isPresent()
+                ? expenseRepository.findByUserIdAndMerchantIdAndCreatedAtBetween(userId, merchantId.get(), startDate, endDate)
+                : expenseRepository.findByUserIdAndMerchantAndCreatedAtBetween(userId, merchant, startDate, endDate);
+        List<Expense>expenseList = archiveService.withArchived(userId, merchant, startDate, endDate, hot);
+        return expenseMapper.toDtos(expenseList);
     }
+
+    /**
+     * One keyset page of a user's expenses ordered by (createdAt, id), optionally restricted to a merchant and a
+     * time range. The cursor of the returned page resumes right after its last expense.
+     */
+    @Transactional(readOnly = true)
+    public ExpensePage getExpensePage(String userId, String merchant, Long startDateLong, Long endDateLong, String cursor, Integer pageSize){
+        Date startDate = Objects.isNull(startDateLong) ? EARLIEST : new Date(startDateLong);
+        Date endDate = Objects.isNull(endDateLong) ? LATEST : new Date(endDateLong);
+        int size = Objects.isNull(pageSize) ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+        ExpensePageCursor after = Objects.isNull(cursor) ? ExpensePageCursor.before(startDate) : ExpensePageCursor.decode(cursor);
+
+        // Fetching one extra row tells us whether another page follows without a count query
+        Optional<Integer> merchantId = merchantIdFilter(merchant);
+        List<Expense> expenseList = Objects.isNull(merchant)
+                ? expenseRepository.findPageAfter(userId, startDate, endDate, after.getCreatedAt(), after.getId(), Limit.of(size + 1))
+                : merchantId.isPresent()
+                ? expenseRepository.findMerchantIdPageAfter(userId, merchantId.get(), startDate, endDate, after.getCreatedAt(), after.getId(), Limit.of(size + 1))
+                : expenseRepository.findMerchantPageAfter(userId, merchant, startDate, endDate, after.getCreatedAt(), after.getId(), Limit.of(size + 1));
+        expenseList = archiveService.pageWithArchived(userId, merchant, startDate, endDate, after, size + 1, expenseList);
+        String nextCursor = null;
+        if(expenseList.size() > size){
+            expenseList = expenseList.subList(0, size);
+            Expense last = expenseList.get(size - 1);
+            nextCursor = new ExpensePageCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return new ExpensePage(expenseMapper.toDtos(expenseList), nextCursor);
+    }
+
+    /**
+     * Writes a user's expenses as NDJSON or CSV while they are read from a database cursor on the export pool, so
+     * memory use stays flat regardless of the size of the history and no connection of the shared pool is held.
+     */
+    public void exportExpenses(String userId, Long startDateLong, Long endDateLong, String format, OutputStream outputStream) throws IOException {
+        Date startDate = Objects.isNull(startDateLong) ? EARLIEST : new Date(startDateLong);
+        Date endDate = Objects.isNull(endDateLong) ? LATEST : new Date(endDateLong);
+        boolean csv = "csv".equalsIgnoreCase(format);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        if(csv){
+            writer.write("external_id,user_id,amount,currency,merchant,created_at\n");
+        }
+        // Archived months are written first, one month file at a time together with the rows the table holds again
+        // for it; the table cursor then skips those months, so no more than a month is held in memory
+        Set<YearMonth> archivedMonths = archiveService.archivedMonths(userId, startDate, endDate);
+        for (YearMonth month : archivedMonths) {
+            for (Expense expense : archiveService.readMonth(userId, month, startDate, endDate)) {
+                writeExportRow(writer, expenseMapper.toDto(expense), csv);
+            }
+        }
+        try (Stream<Expense> expenses = expenseExportRepository.streamByUserIdAndCreatedAtBetween(userId, startDate, endDate)) {
+            Iterator<Expense> iterator = expenses.iterator();
+            while (iterator.hasNext()) {
+                Expense expense = iterator.next();
+                if(archivedMonths.isEmpty() || !archivedMonths.contains(archiveService.monthOf(expense.getCreatedAt()))){
+                    writeExportRow(writer, expenseMapper.toDto(expense), csv);
+                }
+            }
+        }
+        writer.flush();
+    }
+
+    private void writeExportRow(Writer writer, ExpenseDto expenseDto, boolean csv) throws IOException {
+        if(csv){
+            writeCsvRow(writer, expenseDto);
+        }else{
+            writer.write(expenseWriter.writeValueAsString(expenseDto));
+            writer.write('\n');
+        }
+    }
+
+    private void writeCsvRow(Writer writer, ExpenseDto expenseDto) throws IOException {
+        writer.write(csvField(expenseDto.getExternalId()));
+        writer.write(',');
+        writer.write(csvField(expenseDto.getUserId()));
+        writer.write(',');
+        writer.write(csvField(Objects.isNull(expenseDto.getAmountMinor()) ? null : Amounts.format(expenseDto.getAmountMinor())));
+        writer.write(',');
+        writer.write(csvField(expenseDto.getCurrency()));
+        writer.write(',');
+        writer.write(csvField(expenseDto.getMerchant()));
+        writer.write(',');
+        writer.write(csvField(Objects.isNull(expenseDto.getCreatedAt()) ? null : expenseDto.getCreatedAt().toInstant()));
+        writer.write('\n');
+    }
+
+    private static String csvField(Object value){
+        if(Objects.isNull(value)){
+            return "";
+        }
+        String text = value.toString();
+        if(text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0){
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * A merchant filter becomes an integer index lookup that also matches other spellings of the merchant, once
+     * every row carries a merchant id. Until then the exact name is matched.
+     */
+    private Optional<Integer> merchantIdFilter(String merchant){
+        if(Objects.isNull(merchant) || !merchantDictionary.isBackfilled()){
+            return Optional.empty();
+        }
+        return merchantDictionary.find(merchant);
+    }
+
     private void setCurrency(ExpenseDto expenseDto){
         if(Objects.isNull(expenseDto.getCurrency())){
             expenseDto.setCurrency(("INR"));
         }
     }
 
+    @Transactional(readOnly = true)
     public List<MerchantSummaryDTO> getMerchantSummary(String userId, Date startTime, Date endTime){
-        List<Expense> expenses = expenseRepository.findByUserIdAndCreatedAtBetween(userId, startTime, endTime);
-
-        // Group expenses by merchant
-        Map<String, List<Expense>> groupedByMerchant = expenses.stream()
-                .collect(Collectors.groupingBy(Expense::getMerchant));
-
-        // Create summary DTOs
-        List<MerchantSummaryDTO> merchantSummaries = groupedByMerchant.entrySet().stream()
-                .map(entry -> {
-                    String merchant = entry.getKey();
-                    List<Expense> merchantExpenses = entry.getValue();
-                    Double totalAmount = merchantExpenses.stream()
-                            .mapToDouble(Expense::getAmount)
-                            .sum();
-                    int count = merchantExpenses.size();
-                    return new MerchantSummaryDTO(merchant, count, totalAmount);
-                })
-                .sorted(Comparator.comparing(MerchantSummaryDTO::getTotalAmount).reversed())
+        return summaryCache.get(userId, "merchant-summary", startTime, endTime,
+                (start, end) -> computeMerchantSummary(userId, start, end), ExpenseService::copyMerchantSummaries);
+    }
+
+    private static List<MerchantSummaryDTO> copyMerchantSummaries(List<MerchantSummaryDTO> summaries){
+        return summaries.stream()
+                .map(summary -> new MerchantSummaryDTO(summary.getMerchant(), summary.getCount(), summary.getTotalAmount(),
+                        summary.getTotalAmountMinor(), summary.getNormalizedTotalAmount(), copyOf(summary.getCurrencyTotals())))
+                .toList();
+    }
+
+    /**
+     * Folds (merchant, day, currency) groups, rollup rows or a GROUP BY projection, into per-merchant totals, converting
+     * each group once at its day's rate. Spellings of one merchant are merged through the merchant dimension. Sorted by
+     * normalized total, merchants with unconvertible amounts last.
+     */
+    private List<MerchantSummaryDTO> computeMerchantSummary(String userId, Date startTime, Date endTime){
+        FxRates rates = fxRateTable.current();
+        Map<String, MerchantSummaryDTO> summaries = new HashMap<>();
+        Map<String, Map<String, Long>> currencyTotals = new HashMap<>();
+        if(rollupService.isEnabled()){
+            for (ExpenseDailyRollup rollup : rollupService.aggregateRange(userId, startTime, endTime)) {
+                // Rollups are kept per merchant name, so their spellings are merged here
+                addToMerchantSummary(summaries, currencyTotals, merchantDictionary.refOf(null, rollup.getId().getMerchant()),
+                        rollup.getId().getCurrency(), rollup.getId().getDay(), rollup.getCount(), rollup.getTotalAmountMinor(), rates);
+            }
+        }else{
+            for (MerchantDayGroup group : expenseRepository.summarizeByMerchantCurrencyAndDay(userId, startTime, endTime)) {
+                addToMerchantSummary(summaries, currencyTotals, merchantDictionary.refOf(group.getMerchantId(), group.getMerchant()),
+                        group.getCurrency(), group.getDay(), group.getExpenseCount(), group.getTotalAmountMinor(), rates);
+            }
+        }
+        summaries.forEach((key, summary) -> {
+            summary.setTotalAmount(Amounts.toMajor(summary.getTotalAmountMinor()));
+            if(Double.isNaN(summary.getNormalizedTotalAmount())){
+                summary.setNormalizedTotalAmount(null);
+            }
+            currencyTotals.get(key).forEach((currency, totalMinor) -> summary.getCurrencyTotals().put(currency, Amounts.toMajor(totalMinor)));
+        });
+        return summaries.values().stream()
+                .sorted(Comparator.comparing(MerchantSummaryDTO::getNormalizedTotalAmount,
+                        Comparator.nullsFirst(Comparator.<Double>naturalOrder())).reversed())
                 .collect(Collectors.toList());
+    }
+
+    private void addToMerchantSummary(Map<String, MerchantSummaryDTO> summaries, Map<String, Map<String, Long>> currencyTotals,
+                                      MerchantRef merchant, String currency, LocalDate day, long count, long totalAmountMinor,
+                                      FxRates rates){
+        String key = merchant.key();
+        MerchantSummaryDTO summary = summaries.computeIfAbsent(key,
+                ignored -> new MerchantSummaryDTO(merchant.name(), 0, 0.0, 0L, 0.0, new TreeMap<>()));
+        summary.setCount(summary.getCount() + (int) count);
+        summary.setTotalAmountMinor(summary.getTotalAmountMinor() + totalAmountMinor);
+        summary.setNormalizedTotalAmount(summary.getNormalizedTotalAmount()
+                + rates.convert(Amounts.toMajor(totalAmountMinor), currency, day.toEpochDay()));
+        currencyTotals.computeIfAbsent(key, ignored -> new TreeMap<>())
+                .merge(Objects.toString(currency, ""), totalAmountMinor, Long::sum);
+    }
+    private void afterWrite(String userId){
+        summaryCache.invalidate(userId);
+        readYourWritesTracker.recordWrite(userId);
+    }
 
-        return merchantSummaries;
+    /** Delivered to the live feed once the surrounding transaction commits. */
+    private void publishChanges(String userId, Collection<Expense> upserted, Collection<String> deletedExternalIds){
+        if(upserted.isEmpty() && deletedExternalIds.isEmpty()){
+            return;
+        }
+        List<ExpenseDto> expenseDtos = new ArrayList<>(upserted.size());
+        for (Expense expense : upserted) {
+            expenseDtos.add(expenseMapper.toDto(expense));
+        }
+        eventPublisher.publishEvent(new ExpenseChangeEvent(userId, expenseDtos, deletedExternalIds));
     }
+
     private void setCreatedAt(ExpenseDto expenseDto){
         if(Objects.isNull(expenseDto.getCreatedAt())){
             expenseDto.setCreatedAt(new Date());
-            System.out.println(expenseDto);
         }
     }
 
+    /** Deletes the expense from the table and from the archive, which may hold it as well or instead. */
     @Transactional
     public Integer deleteExpense(String userId,ExpenseDto expenseDto){
-        try{
-            return expenseRepository.deleteByExternalId(expenseDto.getExternalId());
-        }catch (Exception ex){
-            ex.printStackTrace();
-            return 0;
-        }
-    }
-
-    public List<ExpenseCountDTO> getExpenseCountsByTimeframe(String userId, String timeframe, Date startTime, Date endTime) {
-        List<Expense> expenses = expenseRepository.findByUserIdAndCreatedAtBetween(userId, startTime, endTime);
-
-        // Group expenses based on timeframe
-        Map<String, List<Expense>> groupedExpenses;
-
-        switch (timeframe.toLowerCase()) {
-            case "day":
-                groupedExpenses = expenses.stream()
-                        .collect(Collectors.groupingBy(expense -> formatDate(expense.getCreatedAt(), "yyyy-MM-dd")));
-                break;
-            case "week":
-                groupedExpenses = expenses.stream()
-                        .collect(Collectors.groupingBy(expense -> formatDate(expense.getCreatedAt(), "YYYY-'W'ww"))); // Year-Week format
-                break;
-            case "month":
-                groupedExpenses = expenses.stream()
-                        .collect(Collectors.groupingBy(expense -> formatDate(expense.getCreatedAt(), "yyyy-MM"))); // Proper year-month format
-                break;
-            case "year":
-                groupedExpenses = expenses.stream()
-                        .collect(Collectors.groupingBy(expense -> formatDate(expense.getCreatedAt(), "yyyy"))); // Just the year
-                break;
-            default:
-                throw new IllegalArgumentException("Invalid timeframe: " + timeframe);
-        }
-
-        return groupedExpenses.entrySet().stream()
-                .map(entry -> {
-                    double totalAmount = entry.getValue().stream().mapToDouble(Expense::getAmount).sum();
-                    return new ExpenseCountDTO(entry.getKey(), entry.getValue().size(), totalAmount);
-                })
-                .sorted(Comparator.comparing(ExpenseCountDTO::getTimePeriod))
-                .collect(Collectors.toList());
+        Optional<Expense> expense = expenseRepository.findByUserIdAndExternalId(userId, expenseDto.getExternalId())
+                .or(() -> findArchived(userId, expenseDto.getExternalId()));
+        Integer deleted = expenseRepository.deleteByUserIdAndExternalId(userId, expenseDto.getExternalId());
+        // The month file is rewritten before the day is recomputed, since the rollup reads archived days from it
+        int archived = expense.map(found -> archiveService.removeArchived(userId, List.of(found))).orElse(0);
+        expense.ifPresent(found -> rollupService.refreshDay(userId, rollupService.dayOf(found.getCreatedAt())));
+        afterWrite(userId);
+        expense.ifPresent(found -> publishChanges(userId, List.of(), List.of(found.getExternalId())));
+        return Math.max(deleted, archived);
     }
 
-    // Utility function to convert Date to formatted String
-    private String formatDate(Date date, String pattern) {
-        return date.toInstant()
-                .atZone(ZoneId.systemDefault())
-                .toLocalDate()
-                .format(DateTimeFormatter.ofPattern(pattern));
+    // Only consulted for external ids the table does not hold, as it reads the archived month files
+    private Optional<Expense> findArchived(String userId, String externalId){
+        if(Strings.isBlank(externalId)){
+            return Optional.empty();
+        }
+        return archiveService.findArchived(userId, List.of(externalId)).stream().findFirst();
     }
 
-    public Map<String, Object> getSummary(String userId) throws Exception{
-        try {
-            List<ExpenseDto> expenses = getExpenses(userId);
-            if (expenses.isEmpty()) {
-                throw new EmptyResultDataAccessException(0);
+    /**
+     * Adds a batch of expenses for one user in a single transaction through the idempotent upsert path, so
+     * re-sending an item with the same externalId overwrites it and is reported as UPDATED. Items without an amount
+     * are reported as invalid and skipped.
+     */
+    @Transactional
+    public List<ExpenseBatchResultDTO> addExpenseBatch(String userId, List<ExpenseDto> expenseDtos){
+        List<ExpenseBatchResultDTO> results = new ArrayList<>(expenseDtos.size());
+        List<ExpenseDto> accepted = new ArrayList<>(expenseDtos.size());
+        for (int i = 0; i < expenseDtos.size(); i++) {
+            ExpenseDto expenseDto = expenseDtos.get(i);
+            if(!Amounts.fits(expenseDto.getCurrency())){
+                results.add(ExpenseBatchResultDTO.invalid(i, expenseDto, "currency has more than " + Amounts.SCALE + " decimals"));
+                continue;
             }
+            if(Objects.isNull(expenseMapper.amountMinorOf(expenseDto))){
+                results.add(ExpenseBatchResultDTO.invalid(i, expenseDto, "amount is required"));
+                continue;
+            }
+            expenseDto.setUserId(userId);
+            accepted.add(expenseDto);
+            results.add(new ExpenseBatchResultDTO(i, null, ExpenseBatchResultDTO.Status.CREATED, null));
+        }
+        Upserted upserted = upsertExpenses(accepted);
 
-            // Calculate largest expense
-            ExpenseDto largestExpense = expenses.stream()
-                    .max(Comparator.comparingDouble(ExpenseDto::getAmount))
-                    .orElse(null);
+        // External ids may have been derived while writing, fill them in for the accepted items
+        int written = 0;
+        for (ExpenseBatchResultDTO result : results) {
+            if(result.getStatus() == ExpenseBatchResultDTO.Status.CREATED){
+                Expense expense = upserted.expenses().get(written++);
+                result.setExternalId(expense.getExternalId());
+                if(!upserted.inserted().contains(expense)){
+                    result.setStatus(ExpenseBatchResultDTO.Status.UPDATED);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Set-based upsert keyed on (userId, externalId): existing rows are loaded with one IN query and updated in
+     * place, missing ones are inserted once the batch is folded, and Hibernate flushes both as JDBC batches at commit.
+     */
+    @Transactional
+    public List<ExpenseBatchResultDTO> upsertExpenseBatch(String userId, List<ExpenseDto> expenseDtos){
+        Set<String> externalIds = new HashSet<>();
+        for (ExpenseDto expenseDto : expenseDtos) {
+            if(Strings.isNotBlank(expenseDto.getExternalId())){
+                externalIds.add(expenseDto.getExternalId());
+            }
+        }
+        Map<String, Expense> expensesByExternalId = new HashMap<>();
+        for (Expense expense : expenseRepository.findByUserIdAndExternalIdIn(userId, externalIds)) {
+            expensesByExternalId.put(expense.getExternalId(), expense);
+        }
+
+        List<ExpenseBatchResultDTO> results = new ArrayList<>(expenseDtos.size());
+        List<Expense> inserted = new ArrayList<>();
+        Set<String> insertedExternalIds = new HashSet<>();
+        Set<LocalDate> updatedDays = new HashSet<>();
+        Map<String, Expense> changed = new LinkedHashMap<>();
+        for (int i = 0; i < expenseDtos.size(); i++) {
+            ExpenseDto expenseDto = expenseDtos.get(i);
+            if(Strings.isBlank(expenseDto.getExternalId())){
+                results.add(ExpenseBatchResultDTO.invalid(i, expenseDto, "externalId is required"));
+                continue;
+            }
+            if(!Amounts.fits(expenseDto.getCurrency())){
+                results.add(ExpenseBatchResultDTO.invalid(i, expenseDto, "currency has more than " + Amounts.SCALE + " decimals"));
+                continue;
+            }
+            Expense expense = expensesByExternalId.get(expenseDto.getExternalId());
+            if(Objects.nonNull(expense)){
+                expense.setCurrency(Strings.isNotBlank(expenseDto.getCurrency())? expenseDto.getCurrency(): expense.getCurrency());
+                expense.setMerchant(Strings.isNotBlank(expenseDto.getMerchant())? expenseDto.getMerchant(): expense.getMerchant());
+                expense.setMerchantId(merchantDictionary.idOf(expense.getMerchant()));
+                Long amountMinor = expenseMapper.amountMinorOf(expenseDto);
+                expense.setAmountMinor(Objects.nonNull(amountMinor)? amountMinor: expense.getAmountMinor());
+                // Rows inserted earlier in this batch are counted by recordCreated with their final values
+                if(!insertedExternalIds.contains(expense.getExternalId())){
+                    updatedDays.add(rollupService.dayOf(expense.getCreatedAt()));
+                }
+                changed.put(expense.getExternalId(), expense);
+                results.add(ExpenseBatchResultDTO.of(i, expenseDto, ExpenseBatchResultDTO.Status.UPDATED));
+            }else if(Objects.isNull(expenseMapper.amountMinorOf(expenseDto))){
+                results.add(ExpenseBatchResultDTO.invalid(i, expenseDto, "amount is required"));
+            }else{
+                expenseDto.setUserId(userId);
+                setCurrency(expenseDto);
+                expense = expenseMapper.toEntity(expenseDto);
+                expense.setMerchantId(merchantDictionary.idOf(expense.getMerchant()));
+                expensesByExternalId.put(expense.getExternalId(), expense);
+                inserted.add(expense);
+                insertedExternalIds.add(expense.getExternalId());
+                changed.put(expense.getExternalId(), expense);
+                results.add(ExpenseBatchResultDTO.of(i, expenseDto, ExpenseBatchResultDTO.Status.CREATED));
+            }
+        }
+        // Expenses the archive already holds go back into the table under their archived id instead of as new rows
+        Set<Expense> rearchived = archiveService.adoptArchivedIds(inserted);
+        inserted.removeIf(rearchived::contains);
+        expenseRepository.saveAll(inserted);
+        if(!rearchived.isEmpty()){
+            expenseUpsertRepository.upsert(new ArrayList<>(rearchived));
+            for (Expense expense : rearchived) {
+                updatedDays.add(rollupService.dayOf(expense.getCreatedAt()));
+            }
+        }
+        rollupService.recordCreated(inserted);
+        for (LocalDate day : updatedDays) {
+            rollupService.refreshDay(userId, day);
+        }
+        afterWrite(userId);
+        publishChanges(userId, changed.values(), List.of());
+        return results;
+    }
 
-            // Calculate average daily expense
-            Map<String, Double> dailyExpenseMap = new HashMap<>();
-            for (ExpenseDto expense : expenses) {
-                String dateKey = new SimpleDateFormat("yyyy-MM-dd").format(expense.getCreatedAt());
-                dailyExpenseMap.put(dateKey, dailyExpenseMap.getOrDefault(dateKey, 0.0) + expense.getAmount());
+    @Transactional
+    public List<ExpenseBatchResultDTO> deleteExpenseBatch(String userId, List<ExpenseDto> expenseDtos){
+        Set<String> externalIds = new HashSet<>();
+        for (ExpenseDto expenseDto : expenseDtos) {
+            if(Strings.isNotBlank(expenseDto.getExternalId())){
+                externalIds.add(expenseDto.getExternalId());
+            }
+        }
+        List<Expense> found = expenseRepository.findByUserIdAndExternalIdIn(userId, externalIds);
+        Set<String> foundExternalIds = new HashSet<>();
+        Set<LocalDate> affectedDays = new HashSet<>();
+        for (Expense expense : found) {
+            foundExternalIds.add(expense.getExternalId());
+            affectedDays.add(rollupService.dayOf(expense.getCreatedAt()));
+        }
+        expenseRepository.deleteAll(found);
+        // Expenses the table does not hold may still be archived; archived copies of the found ones go as well
+        Set<String> missingExternalIds = new HashSet<>(externalIds);
+        missingExternalIds.removeAll(foundExternalIds);
+        List<Expense> archived = new ArrayList<>(found);
+        if(!missingExternalIds.isEmpty()){
+            for (Expense expense : archiveService.findArchived(userId, missingExternalIds)) {
+                foundExternalIds.add(expense.getExternalId());
+                affectedDays.add(rollupService.dayOf(expense.getCreatedAt()));
+                archived.add(expense);
             }
-            double averageDailyExpense = dailyExpenseMap.values().stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
+        }
+        archiveService.removeArchived(userId, archived);
 
-            // Calculate top merchant by total spending
-            Map<String, Double> merchantSpendMap = new HashMap<>();
-            for (ExpenseDto expense : expenses) {
-                merchantSpendMap.put(expense.getMerchant(), merchantSpendMap.getOrDefault(expense.getMerchant(), 0.0) + expense.getAmount());
+        List<ExpenseBatchResultDTO> results = new ArrayList<>(expenseDtos.size());
+        for (int i = 0; i < expenseDtos.size(); i++) {
+            ExpenseDto expenseDto = expenseDtos.get(i);
+            if(Strings.isBlank(expenseDto.getExternalId())){
+                results.add(ExpenseBatchResultDTO.invalid(i, expenseDto, "externalId is required"));
+            }else{
+                results.add(ExpenseBatchResultDTO.of(i, expenseDto, foundExternalIds.contains(expenseDto.getExternalId())
+                        ? ExpenseBatchResultDTO.Status.DELETED : ExpenseBatchResultDTO.Status.NOT_FOUND));
             }
-            String topMerchant = merchantSpendMap.entrySet().stream()
-                    .max(Map.Entry.comparingByValue())
-                    .map(Map.Entry::getKey)
-                    .orElse(null);
+        }
+        for (LocalDate day : affectedDays) {
+            rollupService.refreshDay(userId, day);
+        }
+        afterWrite(userId);
+        publishChanges(userId, List.of(), foundExternalIds);
+        return results;
+    }
+
+    /** Counts per bucket of {@code zone}'s calendar (the server zone when null), optionally zero-filling empty buckets. */
+    @Transactional(readOnly = true)
+    public List<ExpenseCountDTO> getExpenseCountsByTimeframe(String userId, String timeframe, Date startTime, Date endTime,
+                                                             ZoneId requestedZone, boolean fillGaps) {
+        Timeframe bucketTimeframe = Timeframe.parse(timeframe);
+        ZoneId zone = requestedZone == null ? rollupService.getZoneId() : requestedZone;
+        String kind = "count:" + bucketTimeframe + ":" + zone.getId() + (fillGaps ? ":filled" : "");
+        return summaryCache.get(userId, kind, startTime, endTime,
+                (start, end) -> computeExpenseCountsByTimeframe(userId, bucketTimeframe, start, end, zone, fillGaps),
+                ExpenseService::copyCounts);
+    }
 
-            // Prepare response
-            Map<String, Object> response = new HashMap<>();
-            response.put("largestExpense", largestExpense);
-            response.put("averageDailyExpense", averageDailyExpense);
-            response.put("topMerchant", topMerchant);
+    private static List<ExpenseCountDTO> copyCounts(List<ExpenseCountDTO> counts){
+        return counts.stream()
+                .map(count -> new ExpenseCountDTO(count.getTimePeriod(), count.getCount(), count.getTotalAmount(),
+                        count.getTotalAmountMinor(), count.getNormalizedTotalAmount(), copyOf(count.getCurrencyTotals())))
+                .toList();
+    }
+
+    private static <V> Map<String, V> copyOf(Map<String, V> map){
+        return Objects.isNull(map) ? null : Collections.unmodifiableMap(new LinkedHashMap<>(map));
+    }
 
-            return response;
-        } catch (Exception ex) {
-            throw new RuntimeException(ex);
+    private List<ExpenseCountDTO> computeExpenseCountsByTimeframe(String userId, Timeframe timeframe, Date startTime, Date endTime,
+                                                                  ZoneId zone, boolean fillGaps) {
+        TimeBucketAccumulator buckets = new TimeBucketAccumulator(timeframe, zone, startTime, endTime);
+        FxRates rates = fxRateTable.current();
+        if (rollupService.isEnabled() && zone.equals(rollupService.getZoneId())) {
+            // Rollup days are local to the server zone, so they fold straight into weeks, months and years
+            for (ExpenseDailyRollup rollup : rollupService.aggregateRange(userId, startTime, endTime)) {
+                long epochDay = rollup.getId().getDay().toEpochDay();
+                String currency = rollup.getId().getCurrency();
+                buckets.addDay(epochDay, rollup.getCount(), rollup.getTotalAmountMinor(), currency,
+                        rates.convert(Amounts.toMajor(rollup.getTotalAmountMinor()), currency, epochDay));
+            }
+        } else {
+            // The database groups by (day, currency) in the requested zone, so each group is converted once
+            for (ExpenseDayGroup group : expenseRepository.countByDayAndCurrency(userId, mysqlZone(rollupService.getZoneId()),
+                    mysqlZone(zone), startTime, endTime)) {
+                if (Objects.isNull(group.getEpochDay())) {
+                    throw new IllegalStateException("CONVERT_TZ cannot shift to " + zone + ", the MySQL time zone tables are not loaded");
+                }
+                long epochDay = group.getEpochDay();
+                buckets.addDay(epochDay, group.getExpenseCount(), group.getTotalAmountMinor(), group.getCurrency(),
+                        rates.convert(Amounts.toMajor(group.getTotalAmountMinor()), group.getCurrency(), epochDay));
+            }
         }
+        return buckets.toCounts(fillGaps);
+    }
+
+    // Fixed offsets as CONVERT_TZ takes them ('Z' is not one of them); region ids are looked up in the time zone tables
+    private static String mysqlZone(ZoneId zone){
+        ZoneId normalized = zone.normalized();
+        if (normalized instanceof ZoneOffset offset) {
+            int seconds = offset.getTotalSeconds();
+            return String.format("%s%02d:%02d", seconds < 0 ? "-" : "+", Math.abs(seconds) / 3600, Math.abs(seconds) / 60 % 60);
+        }
+        return zone.getId();
+    }
+
+    @Transactional(readOnly = true)
+    public Map<String, Object> getSummary(String userId) throws Exception{
+        return summaryCache.get(userId, "summary", EARLIEST, LATEST, (start, end) -> computeSummary(userId),
+                this::copySummary);
+    }
+
+    // Nested maps are cached unmodifiable, so only the largest expense needs a copy of its own
+    private Map<String, Object> copySummary(Map<String, Object> summary){
+        Map<String, Object> copy = new HashMap<>(summary);
+        copy.computeIfPresent("largestExpense", (key, largest) -> {
+            ExpenseDto expenseDto = (ExpenseDto) largest;
+            return new ExpenseDto(expenseDto.getExternalId(), expenseDto.getAmount(), expenseDto.getAmountMinor(), expenseDto.getUserId(),
+                    expenseDto.getMerchant(), expenseDto.getCurrency(),
+                    Objects.isNull(expenseDto.getCreatedAt()) ? null : new Date(expenseDto.getCreatedAt().getTime()));
+        });
+        return Collections.unmodifiableMap(copy);
+    }
+
+    private Map<String, Object> computeSummary(String userId){
+        // One streamed pass over the history; only the largest expense is loaded as an entity
+        ExpenseSummaryAccumulator summary = expenseSummaryService.summarize(userId);
+        Expense largestExpense = expenseRepository.findById(summary.getLargestExpenseId())
+                .or(() -> archiveService.findArchived(userId, summary.getLargestExpenseId()))
+                .orElseThrow(() -> new EmptyResultDataAccessException(1));
+
+        Map<String, Object> percentiles = new LinkedHashMap<>();
+        percentiles.put("p90", summary.percentile(90));
+        percentiles.put("p95", summary.percentile(95));
+        percentiles.put("p99", summary.percentile(99));
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("largestExpense", expenseMapper.toDto(largestExpense));
+        response.put("averageDailyExpense", summary.getAverageDailyAmount());
+        response.put("topMerchant", summary.getTopMerchant());
+        response.put("expenseCount", summary.getCount());
+        response.put("totalExpense", summary.getTotalAmount());
+        response.put("totalExpenseMinor", summary.getTotalAmountMinor());
+        response.put("medianExpense", summary.percentile(50));
+        response.put("percentiles", Collections.unmodifiableMap(percentiles));
+        response.put("currencyTotals", copyOf(summary.getCurrencyTotals()));
+        FxRates rates = fxRateTable.current();
+        response.put("baseCurrency", rates.getBaseCurrency());
+        response.put("normalizedTotalExpense", summary.getNormalizedTotalAmount(rates));
+        response.put("normalizedAverageDailyExpense", summary.getNormalizedAverageDailyAmount(rates));
+        return response;
     }
 
 }
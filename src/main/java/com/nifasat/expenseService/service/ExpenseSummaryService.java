@@ -0,0 +1,162 @@
+package com.nifasat.expenseService.service;
+
+import com.nifasat.expenseService.archive.ExpenseArchiveStore;
+import com.nifasat.expenseService.datasource.ReadRoutingContext;
+import com.nifasat.expenseService.dto.ExpenseHistoryBounds;
+import com.nifasat.expenseService.entity.Expense;
+import com.nifasat.expenseService.merchant.MerchantDictionary;
+import com.nifasat.expenseService.repository.ExpenseRepository;
+import com.nifasat.expenseService.summary.ExpenseSummaryAccumulator;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.YearMonth;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Stream;
+
+/**
+ * Streams a user's history once through an {@link ExpenseSummaryAccumulator}, adding archived months from the
+ * {@link ExpenseArchiveStore}. Histories above {@code expense.summary.parallel-threshold} rows are split into time
+ * slices of roughly {@code expense.summary.slice-rows} rows that are scanned on a dedicated fork-join pool, each in
+ * its own read-only transaction, and merged. The pool is kept small because every running slice holds a database
+ * connection.
+ */
+@Service
+public class ExpenseSummaryService {
+    @Autowired
+    private ExpenseRepository expenseRepository;
+    @Autowired
+    private ExpenseRollupService rollupService;
+    @Autowired
+    private ExpenseArchiveStore archiveStore;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private MerchantDictionary merchantDictionary;
+    @Value("${expense.summary.parallel-threshold:250000}")
+    private long parallelThreshold;
+    @Value("${expense.summary.slice-rows:100000}")
+    private long sliceRows;
+    @Value("${expense.summary.parallelism:4}")
+    private int parallelism;
+
+    private TransactionTemplate readOnlyTransaction;
+    private ForkJoinPool slicePool;
+
+    @PostConstruct
+    void init(){
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        slicePool = new ForkJoinPool(parallelism);
+    }
+
+    @PreDestroy
+    void shutdown(){
+        slicePool.shutdown();
+    }
+
+    public ExpenseSummaryAccumulator summarize(String userId){
+        Date archivedUntil = archiveStore.archivedUntil(userId);
+        ExpenseSummaryAccumulator summary = summarizeTable(userId, archivedUntil);
+        if (Objects.isNull(archivedUntil)) {
+            return summary;
+        }
+        // Table rows older than the archive, plus archived months without the rows the table holds again
+        ExpenseSummaryAccumulator archived = new ExpenseSummaryAccumulator(rollupService.getZoneId());
+        Set<Long> tableIds = new HashSet<>();
+        for (Expense expense : expenseRepository.findByUserIdInRange(userId, new Date(0), archivedUntil)) {
+            tableIds.add(expense.getId());
+            add(archived, expense);
+        }
+        for (YearMonth month : archiveStore.archivedMonths(userId)) {
+            for (Expense expense : archiveStore.read(userId, month)) {
+                if (!tableIds.contains(expense.getId())) {
+                    add(archived, expense);
+                }
+            }
+        }
+        return summary.merge(archived);
+    }
+
+    // Table rows created at or after archivedUntil (all of them when nothing is archived)
+    private ExpenseSummaryAccumulator summarizeTable(String userId, Date archivedUntil){
+        ExpenseHistoryBounds bounds = expenseRepository.historyBoundsByUserId(userId);
+        long rows = bounds.getExpenseCount() == null ? 0 : bounds.getExpenseCount();
+        if (rows == 0 || bounds.getFirstCreatedAt() == null) {
+            return new ExpenseSummaryAccumulator(rollupService.getZoneId());
+        }
+        long start = bounds.getFirstCreatedAt().getTime();
+        if (Objects.nonNull(archivedUntil)) {
+            start = Math.max(start, archivedUntil.getTime());
+        }
+        long end = bounds.getLastCreatedAt().getTime() + 1;
+        if (rows < parallelThreshold || start >= end) {
+            return scan(userId, start, Math.max(start, end));
+        }
+        return slicePool.invoke(new SliceTask(userId, start, end, rows));
+    }
+
+    // Merchants are counted under their canonical name, so spellings of one merchant are not split
+    private void add(ExpenseSummaryAccumulator accumulator, Expense expense){
+        accumulator.add(expense.getId(), expense.getCreatedAt().getTime(),
+                Objects.isNull(expense.getAmountMinor()) ? 0 : expense.getAmountMinor(), expense.getCurrency(),
+                merchantDictionary.displayNameOf(expense.getMerchantId(), expense.getMerchant()));
+    }
+
+    private ExpenseSummaryAccumulator scan(String userId, long start, long end){
+        return readOnlyTransaction.execute(status -> {
+            ExpenseSummaryAccumulator accumulator = new ExpenseSummaryAccumulator(rollupService.getZoneId());
+            try (Stream<Object[]> rows = expenseRepository.streamSummaryRows(userId, new Date(start), new Date(end))) {
+                rows.forEach(row -> accumulator.add((Long) row[0], ((Date) row[1]).getTime(),
+                        row[2] == null ? 0 : (Long) row[2], (String) row[3],
+                        merchantDictionary.displayNameOf((Integer) row[5], (String) row[4])));
+            }
+            return accumulator;
+        });
+    }
+
+    /** Halves the time range until a slice is expected to hold at most {@code sliceRows} rows. */
+    private class SliceTask extends RecursiveTask<ExpenseSummaryAccumulator> {
+        private final String userId;
+        private final long start;
+        private final long end;
+        private final long estimatedRows;
+
+        SliceTask(String userId, long start, long end, long estimatedRows){
+            this.userId = userId;
+            this.start = start;
+            this.end = end;
+            this.estimatedRows = estimatedRows;
+        }
+
+        @Override
+        protected ExpenseSummaryAccumulator compute(){
+            if (estimatedRows <= sliceRows || end - start < 2) {
+                // Pool threads do not carry the request's routing context
+                String previousUserId = ReadRoutingContext.getUserId();
+                ReadRoutingContext.setUserId(userId);
+                try {
+                    return scan(userId, start, end);
+                } finally {
+                    ReadRoutingContext.setUserId(previousUserId);
+                }
+            }
+            // Assumes rows are spread evenly over time; a skewed slice only costs a longer leaf
+            long middle = start + (end - start) / 2;
+            SliceTask later = new SliceTask(userId, middle, end, estimatedRows / 2);
+            later.fork();
+            ExpenseSummaryAccumulator earlier = new SliceTask(userId, start, middle, estimatedRows - estimatedRows / 2).compute();
+            return earlier.merge(later.join());
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.nifasat.expenseService.summary;
+
+import com.nifasat.expenseService.fx.FxRates;
+import com.nifasat.expenseService.money.Amounts;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Native expense counts and minor-unit totals grouped by (day, currency), so an aggregate is converted with one FX lookup per
+ * group instead of one per row. Groups are packed into a single {@code long} key of the epoch day and a currency
+ * dictionary index. Not thread-safe.
+ */
+public final class CurrencyDayTotals {
+
+    private static final int CURRENCY_BITS = 16;
+    private static final long CURRENCY_MASK = (1L << CURRENCY_BITS) - 1;
+
+    private final LongLongOpenHashMap totals = new LongLongOpenHashMap(64);
+    private final LongLongOpenHashMap counts = new LongLongOpenHashMap(64);
+    private final List<String> currencies = new ArrayList<>();
+    private final Map<String, Integer> currencyIndexes = new HashMap<>();
+    private String lastCurrency;
+    private int lastIndex;
+
+    public void add(long epochDay, String currency, long count, long amountMinor) {
+        long key = (epochDay << CURRENCY_BITS) | index(Objects.toString(currency, ""));
+        totals.add(key, amountMinor);
+        counts.add(key, count);
+    }
+
+    public CurrencyDayTotals merge(CurrencyDayTotals other) {
+        other.forEach(this::add);
+        return this;
+    }
+
+    public void forEach(Group group) {
+        totals.forEach((key, total) -> group.accept(key >> CURRENCY_BITS, currencies.get((int) (key & CURRENCY_MASK)),
+                counts.get(key), total));
+    }
+
+    /** Sum of every group converted at its day's rate, in major units; NaN when any group's currency has no rate. */
+    public double normalizedTotal(FxRates rates) {
+        double[] normalized = new double[1];
+        forEach((epochDay, currency, count, totalMinor) ->
+                normalized[0] += rates.convert(Amounts.toMajor(totalMinor), currency, epochDay));
+        return normalized[0];
+    }
+
+    private int index(String currency) {
+        // Rows of one user are nearly always in the same currency, so skip the dictionary lookup on repeats
+        if (currency.equals(lastCurrency)) {
+            return lastIndex;
+        }
+        Integer index = currencyIndexes.get(currency);
+        if (index == null) {
+            if (currencies.size() > CURRENCY_MASK) {
+                throw new IllegalStateException("Too many distinct currencies");
+            }
+            index = currencies.size();
+            currencies.add(currency);
+            currencyIndexes.put(currency, index);
+        }
+        lastCurrency = currency;
+        lastIndex = index;
+        return index;
+    }
+
+    public interface Group {
+        void accept(long epochDay, String currency, long count, long totalMinor);
+    }
+}
@@ -0,0 +1,134 @@
+package com.nifasat.expenseService.summary;
+
+import com.nifasat.expenseService.bucketing.EpochDayResolver;
+import com.nifasat.expenseService.fx.FxRates;
+import com.nifasat.expenseService.money.Amounts;
+
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Computes every summary statistic in one pass over (id, createdAt, amountMinor, currency, merchant) rows. Amounts
+ * stay in {@link Amounts minor units} throughout, so sums are exact: day, merchant and currency totals use
+ * open-addressing primitive maps and amounts are kept in a growable {@code long[]} for the median and percentiles. Native (day, currency) totals are kept as well so the totals can be normalized into a base
+ * currency afterwards. Accumulators built over disjoint slices of a history can be {@link #merge merged}.
+ * Not thread-safe.
+ */
+public final class ExpenseSummaryAccumulator {
+
+    private final EpochDayResolver resolver;
+    private final LongLongOpenHashMap dayTotals = new LongLongOpenHashMap(256);
+    private final StringLongOpenHashMap merchantTotals = new StringLongOpenHashMap(64);
+    private final StringLongOpenHashMap currencyTotals = new StringLongOpenHashMap(4);
+    private final CurrencyDayTotals currencyDayTotals = new CurrencyDayTotals();
+
+    private long count;
+    private long totalAmountMinor;
+    private long largestAmountMinor = Long.MIN_VALUE;
+    private long largestExpenseId = -1;
+    private long[] amounts = new long[1024];
+    private boolean sorted;
+
+    public ExpenseSummaryAccumulator(ZoneId zone) {
+        this.resolver = new EpochDayResolver(zone);
+    }
+
+    public void add(long id, long createdAtMillis, long amountMinor, String currency, String merchant) {
+        if (count == amounts.length) {
+            amounts = Arrays.copyOf(amounts, amounts.length * 2);
+        }
+        amounts[(int) count++] = amountMinor;
+        sorted = false;
+        totalAmountMinor += amountMinor;
+        if (amountMinor > largestAmountMinor) {
+            largestAmountMinor = amountMinor;
+            largestExpenseId = id;
+        }
+        long epochDay = resolver.epochDay(createdAtMillis);
+        dayTotals.add(epochDay, amountMinor);
+        currencyDayTotals.add(epochDay, currency, 1, amountMinor);
+        merchantTotals.add(Objects.toString(merchant, ""), amountMinor);
+        currencyTotals.add(Objects.toString(currency, ""), amountMinor);
+    }
+
+    public ExpenseSummaryAccumulator merge(ExpenseSummaryAccumulator other) {
+        if (count + other.count > amounts.length) {
+            amounts = Arrays.copyOf(amounts, (int) Math.max(count + other.count, amounts.length * 2L));
+        }
+        System.arraycopy(other.amounts, 0, amounts, (int) count, (int) other.count);
+        count += other.count;
+        sorted = false;
+        totalAmountMinor += other.totalAmountMinor;
+        if (other.largestAmountMinor > largestAmountMinor) {
+            largestAmountMinor = other.largestAmountMinor;
+            largestExpenseId = other.largestExpenseId;
+        }
+        dayTotals.addAll(other.dayTotals);
+        merchantTotals.addAll(other.merchantTotals);
+        currencyTotals.addAll(other.currencyTotals);
+        currencyDayTotals.merge(other.currencyDayTotals);
+        return this;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotalAmountMinor() {
+        return totalAmountMinor;
+    }
+
+    public double getTotalAmount() {
+        return Amounts.toMajor(totalAmountMinor);
+    }
+
+    /** Id of the largest expense, or -1 when nothing was added. */
+    public long getLargestExpenseId() {
+        return largestExpenseId;
+    }
+
+    /** Total spend divided by the number of distinct days with spend. */
+    public Double getAverageDailyAmount() {
+        return dayTotals.size() == 0 ? null : Amounts.toMajor(totalAmountMinor) / dayTotals.size();
+    }
+
+    /** Merchant with the highest total spend; null when that is the group of expenses without a merchant. */
+    public String getTopMerchant() {
+        String merchant = merchantTotals.maxKey();
+        return merchant == null || merchant.isEmpty() ? null : merchant;
+    }
+
+    /** Total spend converted into the base currency of {@code rates}; null when a currency has no rate. */
+    public Double getNormalizedTotalAmount(FxRates rates) {
+        double normalized = currencyDayTotals.normalizedTotal(rates);
+        return Double.isNaN(normalized) ? null : normalized;
+    }
+
+    /** Normalized total spend divided by the number of distinct days with spend. */
+    public Double getNormalizedAverageDailyAmount(FxRates rates) {
+        Double normalized = getNormalizedTotalAmount(rates);
+        return normalized == null || dayTotals.size() == 0 ? null : normalized / dayTotals.size();
+    }
+
+    public Map<String, Double> getCurrencyTotals() {
+        Map<String, Double> totals = new LinkedHashMap<>();
+        currencyTotals.toMap().forEach((currency, totalMinor) -> totals.put(currency, Amounts.toMajor(totalMinor)));
+        return totals;
+    }
+
+    /** Nearest-rank percentile of the expense amounts, e.g. {@code percentile(50)} for the median. */
+    public Double percentile(double percentile) {
+        if (count == 0) {
+            return null;
+        }
+        if (!sorted) {
+            Arrays.sort(amounts, 0, (int) count);
+            sorted = true;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * count);
+        return Amounts.toMajor(amounts[Math.max(0, Math.min(rank, (int) count) - 1)]);
+    }
+}
@@ -0,0 +1,93 @@
+package com.nifasat.expenseService.summary;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Open-addressing {@code String -> long} sum map with linear probing. Keys are compared by cached hash first, so
+ * merchant and currency names repeated across rows cost one probe and no {@link Long} allocation.
+ */
+final class StringLongOpenHashMap {
+
+    private String[] keys;
+    private int[] hashes;
+    private long[] values;
+    private int size;
+    private int mask;
+
+    StringLongOpenHashMap(int expectedSize) {
+        allocate(Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1);
+    }
+
+    void add(String key, long value) {
+        int hash = spread(key.hashCode());
+        int slot = hash & mask;
+        while (keys[slot] != null) {
+            if (hashes[slot] == hash && keys[slot].equals(key)) {
+                values[slot] += value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        hashes[slot] = hash;
+        values[slot] = value;
+        if (++size * 2 > keys.length) {
+            rehash();
+        }
+    }
+
+    void addAll(StringLongOpenHashMap other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.keys[i] != null) {
+                add(other.keys[i], other.values[i]);
+            }
+        }
+    }
+
+    /** Key with the largest sum, or null when empty. */
+    String maxKey() {
+        String best = null;
+        long bestValue = Long.MIN_VALUE;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null && (best == null || values[i] > bestValue)) {
+                best = keys[i];
+                bestValue = values[i];
+            }
+        }
+        return best;
+    }
+
+    Map<String, Long> toMap() {
+        Map<String, Long> map = new LinkedHashMap<>(size * 2);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                map.put(keys[i], values[i]);
+            }
+        }
+        return map;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private void allocate(int capacity) {
+        keys = new String[capacity];
+        hashes = new int[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    private void rehash() {
+        String[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                add(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
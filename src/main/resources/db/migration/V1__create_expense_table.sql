@@ -0,0 +1,11 @@
+-- Schema as previously created by hibernate ddl-auto; existing databases are baselined at this version
+CREATE TABLE IF NOT EXISTS expense (
+    id          BIGINT       NOT NULL,
+    external_id VARCHAR(255),
+    user_id     VARCHAR(255),
+    amount      DOUBLE,
+    currency    VARCHAR(255),
+    merchant    VARCHAR(255),
+    created_at  DATETIME(6),
+    PRIMARY KEY (id)
+);
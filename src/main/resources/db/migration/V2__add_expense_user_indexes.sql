@@ -0,0 +1,3 @@
+-- Range and merchant analytics always filter on user_id first, then created_at
+CREATE INDEX idx_expense_user_created_at ON expense (user_id, created_at);
+CREATE INDEX idx_expense_user_merchant_created_at ON expense (user_id, merchant, created_at);
@@ -0,0 +1,5 @@
+-- Keep the oldest row of every (user_id, external_id) pair left behind by redeliveries, then enforce uniqueness
+DELETE e1 FROM expense e1
+    JOIN expense e2 ON e1.user_id = e2.user_id AND e1.external_id = e2.external_id AND e1.id > e2.id;
+
+ALTER TABLE expense ADD CONSTRAINT uk_expense_user_external_id UNIQUE (user_id, external_id);
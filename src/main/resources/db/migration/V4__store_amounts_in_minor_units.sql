@@ -0,0 +1,23 @@
+-- Amounts become exact BIGINT hundredths of the major unit (see Amounts) instead of DOUBLE
+ALTER TABLE expense ADD COLUMN amount_minor BIGINT;
+-- Scaled as DECIMAL, where ROUND is half away from zero; on the DOUBLE, 1.005 * 100 is 100.4999... and rounds to 100
+UPDATE expense SET amount_minor = ROUND(CAST(amount AS DECIMAL(65, 10)) * 100) WHERE amount IS NOT NULL;
+ALTER TABLE expense DROP COLUMN amount;
+
+-- Rollup as previously created by hibernate ddl-auto, so the conversion below also applies to new databases
+CREATE TABLE IF NOT EXISTS expense_daily_rollup (
+    user_id       VARCHAR(255) NOT NULL,
+    expense_day   DATE         NOT NULL,
+    merchant      VARCHAR(255) NOT NULL,
+    currency      VARCHAR(255) NOT NULL,
+    expense_count BIGINT       NOT NULL,
+    total_amount  DOUBLE       NOT NULL,
+    max_amount    DOUBLE       NOT NULL,
+    PRIMARY KEY (currency, expense_day, merchant, user_id)
+);
+ALTER TABLE expense_daily_rollup
+    ADD COLUMN total_amount_minor BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN max_amount_minor BIGINT NOT NULL DEFAULT 0;
+UPDATE expense_daily_rollup SET total_amount_minor = ROUND(CAST(total_amount AS DECIMAL(65, 10)) * 100),
+                                max_amount_minor = ROUND(CAST(max_amount AS DECIMAL(65, 10)) * 100);
+ALTER TABLE expense_daily_rollup DROP COLUMN total_amount, DROP COLUMN max_amount;
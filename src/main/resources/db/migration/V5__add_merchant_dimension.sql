@@ -0,0 +1,12 @@
+-- Canonical merchants; expense rows reference them by integer id (MerchantBackfillJob fills in existing rows)
+CREATE TABLE merchant (
+    id            INT          NOT NULL AUTO_INCREMENT,
+    canonical_key VARCHAR(255) NOT NULL,
+    name          VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_merchant_canonical_key UNIQUE (canonical_key)
+);
+
+ALTER TABLE expense ADD COLUMN merchant_id INT;
+-- idx_expense_user_merchant_created_at still serves the name filter until the backfill completes
+CREATE INDEX idx_expense_user_merchant_id_created_at ON expense (user_id, merchant_id, created_at);
@@ -0,0 +1,9 @@
+-- Rollup rows for every user day still in the expense table, so the analytics endpoints read complete totals on an
+-- existing database without a startup rebuild. Days are local dates of created_at, which the driver writes in the
+-- server time zone the rollup is keyed by; days with no rows left in the table (archived months) keep their totals.
+REPLACE INTO expense_daily_rollup (user_id, expense_day, merchant, currency, expense_count, total_amount_minor, max_amount_minor)
+SELECT user_id, DATE(created_at), COALESCE(merchant, ''), COALESCE(currency, ''),
+       COUNT(*), SUM(COALESCE(amount_minor, 0)), MAX(COALESCE(amount_minor, 0))
+FROM expense
+WHERE user_id IS NOT NULL AND created_at IS NOT NULL
+GROUP BY user_id, DATE(created_at), COALESCE(merchant, ''), COALESCE(currency, '');
@@ -0,0 +1,8 @@
+-- Backing table of the pooled expense_seq generator (MySQL has no sequences), previously left to hibernate ddl-auto.
+-- The first value clears existing ids, since the pooled optimizer hands out the 50 ids up to the value it reads.
+CREATE TABLE IF NOT EXISTS expense_seq (
+    next_val BIGINT
+);
+INSERT INTO expense_seq (next_val)
+SELECT COALESCE(MAX(id), 0) + 50 FROM expense
+WHERE NOT EXISTS (SELECT 1 FROM expense_seq);
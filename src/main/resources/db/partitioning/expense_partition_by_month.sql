@@ -0,0 +1,21 @@
+-- Optional: range-partitions the expense table by calendar month of created_at. Not a Flyway migration, apply it
+-- by hand in a maintenance window, then set expense.partitioning.enabled=true so new months are added ahead of time.
+--
+-- MySQL requires the partitioning column in every unique key, so created_at joins the primary key and the
+-- idempotency key. (user_id, external_id) is then only unique per created_at: producers must send createdAt for
+-- redeliveries to stay idempotent, since a server-assigned timestamp differs on every delivery.
+-- Partition bounds are in the server zone, the same calendar as the daily rollup and the archive.
+UPDATE expense SET created_at = CURRENT_TIMESTAMP(6) WHERE created_at IS NULL;
+
+ALTER TABLE expense
+    MODIFY created_at DATETIME(6) NOT NULL,
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, created_at),
+    DROP INDEX uk_expense_user_external_id,
+    ADD CONSTRAINT uk_expense_user_external_id UNIQUE (user_id, external_id, created_at);
+
+-- Adjust the first bound to the oldest month still in the table; p_old catches anything before it
+ALTER TABLE expense PARTITION BY RANGE COLUMNS (created_at) (
+    PARTITION p_old VALUES LESS THAN ('2024-01-01 00:00:00'),
+    PARTITION p_future VALUES LESS THAN (MAXVALUE)
+);
@@ -0,0 +1,56 @@
+package com.nifasat.expenseService.archive;
+
+import com.nifasat.expenseService.entity.Expense;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExpenseArchiveCodecTest {
+
+	@Test
+	void roundTripsEveryColumnIncludingNulls() throws Exception {
+		Random random = new Random(11);
+		List<Expense> expenses = new ArrayList<>();
+		long createdAt = 1_700_000_000_000L;
+		for (int i = 0; i < 5_000; i++) {
+			createdAt += random.nextInt(3_600_000);
+			expenses.add(Expense.builder()
+					.id(10_000L + i * 3L)
+					.userId("user-1")
+					.externalId("ext-" + i)
+					.amountMinor(i % 97 == 0 ? null : (long) random.nextInt(10_000_000))
+					.currency(i % 5 == 0 ? "USD" : "INR")
+					.merchant(i % 89 == 0 ? null : "merchant-" + (i % 40))
+					.createdAt(i % 101 == 0 ? null : new Date(createdAt))
+					.build());
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ExpenseArchiveCodec.write(expenses, bytes);
+		List<Expense> decoded = ExpenseArchiveCodec.read("user-1", new ByteArrayInputStream(bytes.toByteArray()));
+
+		assertEquals(expenses.size(), decoded.size());
+		for (int i = 0; i < expenses.size(); i++) {
+			Expense expected = expenses.get(i);
+			Expense actual = decoded.get(i);
+			assertEquals(expected.getId(), actual.getId());
+			assertEquals(expected.getUserId(), actual.getUserId());
+			assertEquals(expected.getExternalId(), actual.getExternalId());
+			assertEquals(expected.getAmountMinor(), actual.getAmountMinor());
+			assertEquals(expected.getCurrency(), actual.getCurrency());
+			assertEquals(expected.getMerchant(), actual.getMerchant());
+			assertEquals(expected.getCreatedAt(), actual.getCreatedAt());
+		}
+		// Delta, dictionary and gzip encoding should beat a naive ~100 bytes per row comfortably
+		assertTrue(bytes.size() < expenses.size() * 20, "archive is " + bytes.size() + " bytes");
+	}
+
+}
@@ -0,0 +1,94 @@
+package com.nifasat.expenseService.bucketing;
+
+import com.nifasat.expenseService.dto.ExpenseCountDTO;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.IsoFields;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TimeBucketAccumulatorTest {
+
+	private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+
+	@Test
+	void matchesJavaTimeAcrossDstTransitions() {
+		Map<Timeframe, Function<ZonedDateTime, String>> reference = Map.of(
+				Timeframe.DAY, time -> time.toLocalDate().toString(),
+				Timeframe.WEEK, time -> String.format("%04d-W%02d", time.get(IsoFields.WEEK_BASED_YEAR),
+						time.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR)),
+				Timeframe.MONTH, time -> String.format("%04d-%02d", time.getYear(), time.getMonthValue()),
+				Timeframe.YEAR, time -> String.valueOf(time.getYear()));
+		long start = Instant.parse("2019-06-01T00:00:00Z").toEpochMilli();
+		long end = Instant.parse("2024-06-01T00:00:00Z").toEpochMilli();
+
+		for (Timeframe timeframe : Timeframe.values()) {
+			Random random = new Random(7);
+			TimeBucketAccumulator buckets = new TimeBucketAccumulator(timeframe, NEW_YORK, new Date(start), new Date(end));
+			Map<String, Integer> expected = new TreeMap<>();
+			for (int i = 0; i < 20_000; i++) {
+				long createdAt = start + (long) (random.nextDouble() * (end - start));
+				buckets.add(createdAt, 100);
+				expected.merge(reference.get(timeframe).apply(Instant.ofEpochMilli(createdAt).atZone(NEW_YORK)), 1, Integer::sum);
+			}
+			Map<String, Integer> actual = new TreeMap<>();
+			for (ExpenseCountDTO bucket : buckets.toCounts(false)) {
+				actual.put(bucket.getTimePeriod(), bucket.getCount());
+			}
+			assertEquals(expected, actual, timeframe.name());
+		}
+	}
+
+	@Test
+	void usesIsoWeeksAroundYearEnd() {
+		assertEquals("2020-W53", weekOf(LocalDate.of(2021, 1, 3)));
+		assertEquals("2021-W01", weekOf(LocalDate.of(2021, 1, 4)));
+		assertEquals("2025-W01", weekOf(LocalDate.of(2024, 12, 30)));
+	}
+
+	@Test
+	void fillsGapsOnlyWhenAsked() {
+		ZoneId utc = ZoneId.of("UTC");
+		Date start = Date.from(Instant.parse("2024-01-01T00:00:00Z"));
+		Date end = Date.from(Instant.parse("2024-01-05T12:00:00Z"));
+		TimeBucketAccumulator buckets = new TimeBucketAccumulator(Timeframe.DAY, utc, start, end);
+		buckets.add(Instant.parse("2024-01-02T10:00:00Z").toEpochMilli(), 1000);
+		buckets.add(Instant.parse("2024-01-04T10:00:00Z").toEpochMilli(), 550);
+
+		assertEquals(List.of(new ExpenseCountDTO("2024-01-02", 1, 1000), new ExpenseCountDTO("2024-01-04", 1, 550)),
+				buckets.toCounts(false));
+		List<ExpenseCountDTO> filled = buckets.toCounts(true);
+		assertEquals(5, filled.size());
+		assertEquals(new ExpenseCountDTO("2024-01-01", 0, 0), filled.get(0));
+		assertEquals(new ExpenseCountDTO("2024-01-05", 0, 0), filled.get(4));
+	}
+
+	@Test
+	void growsAroundKeysOutsideTheRequestedRange() {
+		ZoneId utc = ZoneId.of("UTC");
+		TimeBucketAccumulator buckets = new TimeBucketAccumulator(Timeframe.DAY, utc,
+				new Date(0), Date.from(Instant.parse("9999-12-31T23:59:59Z")));
+		buckets.add(Instant.parse("2024-03-01T00:00:00Z").toEpochMilli(), 100);
+		buckets.add(Instant.parse("2001-03-01T00:00:00Z").toEpochMilli(), 200);
+		buckets.addDay(LocalDate.of(2030, 1, 1).toEpochDay(), 3, 900);
+
+		List<ExpenseCountDTO> counts = buckets.toCounts(false);
+		assertEquals(List.of(new ExpenseCountDTO("2001-03-01", 1, 200), new ExpenseCountDTO("2024-03-01", 1, 100),
+				new ExpenseCountDTO("2030-01-01", 3, 900)), counts);
+	}
+
+	private static String weekOf(LocalDate day) {
+		return Timeframe.WEEK.label(Timeframe.WEEK.key(day.toEpochDay()));
+	}
+
+}
@@ -0,0 +1,147 @@
+package com.nifasat.expenseService.consumer;
+
+import com.nifasat.expenseService.dto.ExpenseDto;
+import com.nifasat.expenseService.service.ExpenseService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class ExpenseConsumerTest {
+
+	private final ExpenseService expenseService = mock(ExpenseService.class);
+
+	private final Map<String, List<String>> persistedByUser = new ConcurrentHashMap<>();
+
+	private ExpenseConsumer consumer;
+
+	@BeforeEach
+	void setUp() {
+		consumer = consumer(4);
+		doAnswer(invocation -> {
+			List<ExpenseDto> expenseDtos = invocation.getArgument(0);
+			for (ExpenseDto expenseDto : expenseDtos) {
+				if (expenseDto.getExternalId() != null && expenseDto.getExternalId().startsWith("bad")) {
+					throw new IllegalStateException("write failed");
+				}
+			}
+			for (ExpenseDto expenseDto : expenseDtos) {
+				persistedByUser.computeIfAbsent(expenseDto.getUserId(), userId -> Collections.synchronizedList(new ArrayList<>()))
+						.add(expenseDto.getExternalId());
+			}
+			return null;
+		}).when(expenseService).createExpenses(anyList());
+	}
+
+	@AfterEach
+	void tearDown() {
+		consumer.shutdown();
+	}
+
+	@Test
+	void keepsEveryUsersRecordsInOrder() {
+		List<ConsumerRecord<String, ExpenseDto>> records = new ArrayList<>();
+		for (int i = 0; i < 40; i++) {
+			String userId = "user-" + (i % 7);
+			records.add(record(i, userId, userId + "-" + i));
+		}
+
+		consumer.listener(records);
+
+		assertEquals(7, persistedByUser.size());
+		persistedByUser.forEach((userId, externalIds) -> {
+			List<String> expected = new ArrayList<>();
+			for (int i = 0; i < 40; i++) {
+				if (("user-" + (i % 7)).equals(userId)) {
+					expected.add(userId + "-" + i);
+				}
+			}
+			assertEquals(expected, externalIds);
+		});
+	}
+
+	@Test
+	void failsTheBatchAtTheLowestFailedRecord() {
+		List<ConsumerRecord<String, ExpenseDto>> records = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			String userId = "user-" + (i % 5);
+			String externalId = i == 13 ? "bad-13" : userId + "-" + i;
+			records.add(i == 7 ? new ConsumerRecord<>("register_expense", 0, i, userId, null) : record(i, userId, externalId));
+		}
+
+		BatchListenerFailedException ex = assertThrows(BatchListenerFailedException.class, () -> consumer.listener(records));
+
+		// The poison record at 7 precedes the write failure at 13, whichever lane finished first
+		assertSame(records.get(7), ex.getRecord());
+		// user-2's lane stops at the poison record, after writing what came before it
+		assertEquals(List.of("user-2-2"), persistedByUser.get("user-2"));
+	}
+
+	@Test
+	void serialPathFailsAtTheRecordThatCannotBeWritten() {
+		ExpenseConsumer serial = consumer(1);
+		List<ConsumerRecord<String, ExpenseDto>> records = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			records.add(record(i, "user-1", i == 6 ? "bad-6" : "user-1-" + i));
+		}
+
+		BatchListenerFailedException ex = assertThrows(BatchListenerFailedException.class, () -> serial.listener(records));
+
+		// Only the failing record is reported, so the healthy ones before it are committed rather than dead-lettered
+		assertSame(records.get(6), ex.getRecord());
+		assertEquals(List.of("user-1-0", "user-1-1", "user-1-2", "user-1-3", "user-1-4", "user-1-5"), persistedByUser.get("user-1"));
+	}
+
+	@Test
+	void redeliveredRecordsWithoutIdentityKeepTheirExternalId() {
+		List<ConsumerRecord<String, ExpenseDto>> records = List.of(anonymous(3), anonymous(4));
+		List<ConsumerRecord<String, ExpenseDto>> redelivered = List.of(anonymous(3));
+
+		consumer.listener(records);
+		consumer.listener(redelivered);
+
+		List<String> externalIds = persistedByUser.get("user-1");
+		assertEquals(3, externalIds.size());
+		assertNotNull(externalIds.get(0));
+		assertNotEquals(externalIds.get(0), externalIds.get(1));
+		assertEquals(externalIds.get(0), externalIds.get(2));
+	}
+
+	private ExpenseConsumer consumer(int parallelism) {
+		ExpenseConsumer expenseConsumer = new ExpenseConsumer();
+		ReflectionTestUtils.setField(expenseConsumer, "expenseService", expenseService);
+		ReflectionTestUtils.setField(expenseConsumer, "meterRegistry", new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(expenseConsumer, "parallelism", parallelism);
+		ReflectionTestUtils.setField(expenseConsumer, "queueDepth", 4);
+		expenseConsumer.registerMeters();
+		return expenseConsumer;
+	}
+
+	private static ConsumerRecord<String, ExpenseDto> anonymous(long offset) {
+		return new ConsumerRecord<>("register_expense", 0, offset, "user-1", new ExpenseDto(null, null, 1000L, "user-1", "merchant", "INR", null));
+	}
+
+	private static ConsumerRecord<String, ExpenseDto> record(long offset, String userId, String externalId) {
+		ExpenseDto expenseDto = new ExpenseDto(externalId, null, 1000L, userId, "merchant", "INR", null);
+		return new ConsumerRecord<>("register_expense", 0, offset, userId, expenseDto);
+	}
+
+}
@@ -0,0 +1,72 @@
+package com.nifasat.expenseService.consumer;
+
+import com.nifasat.expenseService.repository.ExpenseRepository;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@Tag("benchmark")
+@SpringBootTest
+@ActiveProfiles("benchmark")
+@EmbeddedKafka(partitions = 1, topics = "register_expense")
+class ExpenseConsumerThroughputBenchmark {
+
+	private static final int RECORDS = 50_000;
+
+	private static final DateTimeFormatter CREATED_AT = DateTimeFormatter
+			.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+	@Autowired
+	private EmbeddedKafkaBroker embeddedKafkaBroker;
+
+	@Autowired
+	private ExpenseRepository expenseRepository;
+
+	@Value("${spring.kafka.topic.name}")
+	private String topic;
+
+	@Test
+	void batchIngestionThroughput() throws Exception {
+		Map<String, Object> producerProps = KafkaTestUtils.producerProps(embeddedKafkaBroker);
+		KafkaTemplate<String, String> kafkaTemplate = new KafkaTemplate<>(
+				new DefaultKafkaProducerFactory<>(producerProps, new StringSerializer(), new StringSerializer()));
+
+		long existing = expenseRepository.count();
+		long start = System.nanoTime();
+		for (int i = 0; i < RECORDS; i++) {
+			String userId = "user-" + (i % 100);
+			kafkaTemplate.send(topic, userId, "{\"amount\":" + (i % 500) + ".25"
+					+ ",\"userId\":\"" + userId + "\",\"merchant\":\"merchant-" + (i % 37) + "\""
+					+ ",\"currency\":\"INR\",\"createdAt\":\"" + CREATED_AT.format(Instant.ofEpochMilli(1_700_000_000_000L + i * 60_000L)) + "\"}");
+		}
+		kafkaTemplate.flush();
+
+		long persisted = 0;
+		long deadline = System.currentTimeMillis() + 300_000;
+		while (persisted < RECORDS && System.currentTimeMillis() < deadline) {
+			Thread.sleep(200);
+			persisted = expenseRepository.count() - existing;
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.printf("Ingested %d expenses in %.2fs (%.0f records/s)%n", persisted, seconds, persisted / seconds);
+		assertEquals(RECORDS, persisted);
+	}
+
+}
@@ -0,0 +1,97 @@
+package com.nifasat.expenseService.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Routes between two in-memory H2 databases, each of which reports its own role, wired the same way as
+ * {@code ReadReplicaConfig}.
+ */
+class ReplicaRoutingDataSourceTest {
+
+	private DataSource primary;
+	private ReadYourWritesTracker readYourWritesTracker;
+	private ReplicaRoutingDataSource routingDataSource;
+	private JdbcTemplate jdbcTemplate;
+	private TransactionTemplate readWrite;
+	private TransactionTemplate readOnly;
+
+	@BeforeEach
+	void setUp() {
+		primary = database("routing_primary", "primary");
+		DataSource replica = database("routing_replica", "replica");
+		readYourWritesTracker = new ReadYourWritesTracker(Duration.ofMinutes(1));
+		routingDataSource = new ReplicaRoutingDataSource(primary, Map.of("replica-0", replica), readYourWritesTracker);
+		LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primary);
+		dataSource.setReadOnlyDataSource(routingDataSource);
+
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+		readWrite = new TransactionTemplate(transactionManager);
+		readOnly = new TransactionTemplate(transactionManager);
+		readOnly.setReadOnly(true);
+	}
+
+	@AfterEach
+	void tearDown() {
+		ReadRoutingContext.clear();
+	}
+
+	@Test
+	void readOnlyTransactionsUseTheReplica() {
+		assertEquals("replica", role(readOnly));
+		assertEquals("primary", role(readWrite));
+	}
+
+	@Test
+	void recentWritersReadFromThePrimary() {
+		readYourWritesTracker.recordWrite("user-1");
+
+		ReadRoutingContext.setUserId("user-1");
+		assertEquals("primary", role(readOnly));
+		ReadRoutingContext.setUserId("user-2");
+		assertEquals("replica", role(readOnly));
+	}
+
+	@Test
+	void fallsBackToThePrimaryWhenNoReplicaIsHealthy() {
+		DataSource unreachable = new DriverManagerDataSource("jdbc:h2:tcp://localhost:1/routing_missing", "sa", "");
+		routingDataSource = new ReplicaRoutingDataSource(primary, Map.of("replica-0", unreachable), readYourWritesTracker);
+		LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primary);
+		dataSource.setReadOnlyDataSource(routingDataSource);
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		readOnly = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		readOnly.setReadOnly(true);
+
+		// The first read fails over and marks the replica down; the health check keeps it down
+		assertEquals("primary", role(readOnly));
+		routingDataSource.checkHealth();
+		assertEquals("primary", role(readOnly));
+	}
+
+	private String role(TransactionTemplate transactionTemplate) {
+		return transactionTemplate.execute(status -> jdbcTemplate.queryForObject("select role from database_role", String.class));
+	}
+
+	private static DataSource database(String name, String role) {
+		DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("create table if not exists database_role (role varchar(16))");
+		jdbcTemplate.update("delete from database_role");
+		jdbcTemplate.update("insert into database_role values (?)", role);
+		return dataSource;
+	}
+
+}
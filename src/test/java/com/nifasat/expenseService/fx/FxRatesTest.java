@@ -0,0 +1,47 @@
+package com.nifasat.expenseService.fx;
+
+import com.nifasat.expenseService.summary.CurrencyDayTotals;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FxRatesTest {
+
+	private static final long MARCH_1 = LocalDate.of(2024, 3, 1).toEpochDay();
+
+	private final FxRates rates = FxRates.of("INR", Map.of("USD", new TreeMap<>(Map.of(
+			LocalDate.of(2024, 3, 1), 83.0,
+			LocalDate.of(2024, 3, 4), 83.5))));
+
+	@Test
+	void usesTheLatestRateOnOrBeforeTheDay() {
+		assertEquals(83.0, rates.rate("USD", MARCH_1 - 10));
+		assertEquals(83.0, rates.rate("USD", MARCH_1));
+		assertEquals(83.0, rates.rate("USD", MARCH_1 + 2));
+		assertEquals(83.5, rates.rate("USD", MARCH_1 + 3));
+		assertEquals(83.5, rates.rate("USD", MARCH_1 + 300));
+		assertEquals(1.0, rates.rate("INR", MARCH_1));
+		assertEquals(1.0, rates.rate("", MARCH_1));
+		assertTrue(Double.isNaN(rates.rate("EUR", MARCH_1)));
+	}
+
+	@Test
+	void normalizesEveryDayAndCurrencyGroupAtItsOwnRate() {
+		CurrencyDayTotals totals = new CurrencyDayTotals();
+		totals.add(MARCH_1, "USD", 1, 1000);
+		totals.add(MARCH_1, "USD", 1, 500);
+		totals.add(MARCH_1 + 3, "USD", 1, 200);
+		totals.add(MARCH_1 + 3, "INR", 1, 10000);
+
+		assertEquals(15.0 * 83.0 + 2.0 * 83.5 + 100.0, totals.normalizedTotal(rates), 1e-9);
+
+		totals.add(MARCH_1, "EUR", 1, 100);
+		assertTrue(Double.isNaN(totals.normalizedTotal(rates)));
+	}
+
+}
@@ -0,0 +1,53 @@
+package com.nifasat.expenseService.live;
+
+import com.nifasat.expenseService.fx.FxRates;
+import io.micrometer.core.instrument.Counter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class LiveSubscriberTest {
+
+	private final ExecutorService writers = Executors.newCachedThreadPool();
+
+	private final CountDownLatch clientReads = new CountDownLatch(1);
+
+	@AfterEach
+	void tearDown() {
+		clientReads.countDown();
+		writers.shutdownNow();
+	}
+
+	@Test
+	void writeThatNeverReturnsFailsTheDrainAfterTheSlowSendLimit() {
+		SseEmitter emitter = mock(SseEmitter.class);
+		// A client that stopped reading: the socket write blocks until the connection is torn down
+		doAnswer(invocation -> {
+			clientReads.await();
+			return null;
+		}).when(emitter).send(any(SseEmitter.SseEventBuilder.class));
+		LiveSubscriber subscriber = new LiveSubscriber("user-1", emitter, 16, ZoneOffset.UTC, LocalDate.of(2024, 3, 18),
+				mock(Counter.class));
+		assertTrue(subscriber.seed(List.of(), FxRates.of("INR", Map.of())));
+
+		assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertThrows(LiveSubscriber.SlowSendException.class,
+				() -> subscriber.drain("INR", writers, Duration.ofMillis(100))));
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.nifasat.expenseService.live;
+
+import com.nifasat.expenseService.dto.ExpenseDto;
+import com.nifasat.expenseService.dto.LiveTotalsDTO;
+import com.nifasat.expenseService.fx.FxRates;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RunningTotalsTest {
+
+	private static final LocalDate TODAY = LocalDate.of(2024, 3, 18);
+
+	private final FxRates rates = FxRates.of("INR", Map.of("USD", new TreeMap<>(Map.of(LocalDate.of(2024, 3, 1), 80.0))));
+
+	@Test
+	void upsertsReplaceTheAmountTheyOverwrite() {
+		RunningTotals totals = new RunningTotals(ZoneOffset.UTC, TODAY);
+		totals.put(expense("a", TODAY, 1000, "INR", "Amazon"), rates, true);
+		totals.put(expense("b", TODAY.minusDays(3), 500, "USD", "Uber"), rates, true);
+		totals.put(expense("a", TODAY, 1500, "INR", "Amazon"), rates, true);
+
+		LiveTotalsDTO snapshot = totals.snapshot("INR");
+		assertEquals(1, snapshot.getTodayCount());
+		assertEquals(15.0, snapshot.getTodayTotalAmount());
+		assertEquals(2, snapshot.getMonthCount());
+		assertEquals(20.0, snapshot.getMonthTotalAmount());
+		assertEquals(15.0 + 5.0 * 80.0, snapshot.getMonthNormalizedTotalAmount());
+		assertEquals("Amazon", snapshot.getTopMerchant());
+
+		totals.remove("a");
+		snapshot = totals.snapshot("INR");
+		assertEquals(0, snapshot.getTodayCount());
+		assertEquals(1, snapshot.getMonthCount());
+		assertEquals("Uber", snapshot.getTopMerchant());
+	}
+
+	@Test
+	void seedingKeepsLiveChangesAndIgnoresOtherMonths() {
+		RunningTotals totals = new RunningTotals(ZoneOffset.UTC, TODAY);
+		totals.put(expense("a", TODAY, 1500, "INR", "Amazon"), rates, true);
+		totals.put(expense("a", TODAY, 1000, "INR", "Amazon"), rates, false);
+		totals.put(expense("old", TODAY.minusMonths(1), 9900, "INR", "Amazon"), rates, false);
+
+		LiveTotalsDTO snapshot = totals.snapshot("INR");
+		assertEquals(1, snapshot.getMonthCount());
+		assertEquals(15.0, snapshot.getMonthTotalAmount());
+	}
+
+	@Test
+	void unconvertibleAmountsOnlyBlankTheNormalizedTotalsWhileTheyAreCounted() {
+		RunningTotals totals = new RunningTotals(ZoneOffset.UTC, TODAY);
+		totals.put(expense("a", TODAY, 1000, "INR", "Amazon"), rates, true);
+		totals.put(expense("b", TODAY, 1000, "EUR", "Lidl"), rates, true);
+		assertNull(totals.snapshot("INR").getTodayNormalizedTotalAmount());
+
+		totals.remove("b");
+		assertEquals(10.0, totals.snapshot("INR").getTodayNormalizedTotalAmount());
+	}
+
+	@Test
+	void rollingOverTheMonthStartsFromZero() {
+		RunningTotals totals = new RunningTotals(ZoneOffset.UTC, LocalDate.of(2024, 3, 31));
+		totals.put(expense("a", LocalDate.of(2024, 3, 31), 1000, "INR", "Amazon"), rates, true);
+
+		assertFalse(totals.rollTo(LocalDate.of(2024, 3, 31)));
+		assertTrue(totals.rollTo(LocalDate.of(2024, 4, 1)));
+		LiveTotalsDTO snapshot = totals.snapshot("INR");
+		assertEquals(0, snapshot.getMonthCount());
+		assertEquals(0.0, snapshot.getMonthTotalAmount());
+		assertNull(snapshot.getTopMerchant());
+	}
+
+	private static ExpenseDto expense(String externalId, LocalDate day, long amountMinor, String currency, String merchant) {
+		Date createdAt = Date.from(day.atTime(12, 0).toInstant(ZoneOffset.UTC));
+		return new ExpenseDto(externalId, null, amountMinor, "user-1", merchant, currency, createdAt);
+	}
+
+}
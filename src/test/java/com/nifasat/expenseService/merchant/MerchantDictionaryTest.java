@@ -0,0 +1,75 @@
+package com.nifasat.expenseService.merchant;
+
+import com.nifasat.expenseService.entity.Expense;
+import com.nifasat.expenseService.repository.MerchantRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MerchantDictionaryTest {
+
+	private final MerchantRepository merchantRepository = mock(MerchantRepository.class);
+
+	private final MerchantDictionary dictionary = new MerchantDictionary();
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(dictionary, "merchantRepository", merchantRepository);
+		ReflectionTestUtils.setField(dictionary, "normalizer", new MerchantNormalizer(List.of(".com"), Map.of()));
+		ReflectionTestUtils.setField(dictionary, "cacheSize", 100L);
+		ReflectionTestUtils.setField(dictionary, "unknownTtl", Duration.ofMinutes(1));
+		dictionary.init();
+		// Every merchant was created concurrently by another transaction, so each one is locked
+		when(merchantRepository.findByCanonicalKey(anyString())).thenReturn(Optional.empty());
+		when(merchantRepository.insertIgnore(anyString(), anyString())).thenReturn(0);
+		when(merchantRepository.lockIdByCanonicalKey("apple")).thenReturn(Optional.of(1));
+		when(merchantRepository.lockIdByCanonicalKey("swiggy")).thenReturn(Optional.of(2));
+		when(merchantRepository.lockIdByCanonicalKey("zomato")).thenReturn(Optional.of(3));
+	}
+
+	@Test
+	void merchantsAreLockedInCanonicalKeyOrder() {
+		List<Expense> expenses = List.of(expense("Zomato"), expense("swiggy.com"), expense(" "), expense("Apple"),
+				expense("zomato"), expense("Swiggy"));
+
+		dictionary.assignIds(expenses);
+
+		InOrder order = inOrder(merchantRepository);
+		order.verify(merchantRepository).lockIdByCanonicalKey("apple");
+		order.verify(merchantRepository, times(2)).lockIdByCanonicalKey("swiggy");
+		order.verify(merchantRepository, times(2)).lockIdByCanonicalKey("zomato");
+		assertEquals(3, expenses.get(0).getMerchantId());
+		assertEquals(2, expenses.get(1).getMerchantId());
+		assertNull(expenses.get(2).getMerchantId());
+		assertEquals(1, expenses.get(3).getMerchantId());
+		assertEquals(3, expenses.get(4).getMerchantId());
+		assertEquals(2, expenses.get(5).getMerchantId());
+	}
+
+	@Test
+	void repeatedNamesAreResolvedOnce() {
+		dictionary.assignIds(List.of(expense("Apple"), expense("Apple"), expense("Apple")));
+
+		verify(merchantRepository, times(1)).lockIdByCanonicalKey("apple");
+	}
+
+	private static Expense expense(String merchant) {
+		return Expense.builder().merchant(merchant).build();
+	}
+
+}
@@ -0,0 +1,46 @@
+package com.nifasat.expenseService.merchant;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MerchantNormalizerTest {
+
+	private final MerchantNormalizer normalizer = new MerchantNormalizer(
+			List.of(".com", ".in", ".co.in", "pvt", "ltd", "inc"), Map.of("amzn", "Amazon", "Amazon Prime Video", "Amazon"));
+
+	@Test
+	void spellingsOfOneMerchantShareAKey() {
+		assertEquals("amazon", normalizer.key("AMAZON"));
+		assertEquals("amazon", normalizer.key("Amazon.in"));
+		assertEquals("amazon", normalizer.key("amazon "));
+		assertEquals("amazon", normalizer.key("  Amazon   Pvt. Ltd."));
+		assertEquals("amazon", normalizer.key("Amazon.co.in"));
+		assertEquals("swiggy instamart", normalizer.key("Swiggy\tInstamart"));
+	}
+
+	@Test
+	void suffixesWithoutADotOnlyMatchWholeWords() {
+		assertEquals("zinc", normalizer.key("Zinc"));
+		assertEquals("inc", normalizer.key("Inc"));
+		assertEquals("flipkart", normalizer.key("Flipkart Inc"));
+	}
+
+	@Test
+	void aliasesResolveToTheirCanonicalMerchant() {
+		assertEquals("amazon", normalizer.key("AMZN"));
+		assertEquals("amazon", normalizer.key("amazon prime video"));
+		assertEquals("Amazon", normalizer.canonicalName("amzn"));
+		assertEquals("Uber", normalizer.canonicalName(" Uber.com "));
+	}
+
+	@Test
+	void blankNamesHaveAnEmptyKey() {
+		assertEquals("", normalizer.key(null));
+		assertEquals("", normalizer.key("   "));
+	}
+
+}
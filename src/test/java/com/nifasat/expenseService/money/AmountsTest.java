@@ -0,0 +1,33 @@
+package com.nifasat.expenseService.money;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AmountsTest {
+
+	@Test
+	void roundsTheDecimalTheAmountPrintsAs() {
+		// 1.005 * 100.0 is 100.49999999999999 as a double
+		assertEquals(101L, Amounts.toMinor(1.005));
+		assertEquals(-101L, Amounts.toMinor(-1.005));
+		assertEquals(30L, Amounts.toMinor(0.1 + 0.2));
+		assertEquals(124950L, Amounts.toMinor(1249.5));
+		assertNull(Amounts.toMinor(null));
+	}
+
+	@Test
+	void rejectsCurrenciesWithMoreThanTwoDecimals() {
+		assertFalse(Amounts.fits("KWD"));
+		assertFalse(Amounts.fits("BHD"));
+		assertTrue(Amounts.fits("INR"));
+		assertTrue(Amounts.fits("JPY"));
+		assertTrue(Amounts.fits(null));
+		assertThrows(IllegalArgumentException.class, () -> Amounts.requireFits("OMR"));
+	}
+
+}
@@ -0,0 +1,176 @@
+package com.nifasat.expenseService.service;
+
+import com.nifasat.expenseService.archive.ExpenseArchiveStore;
+import com.nifasat.expenseService.cache.ExpenseSummaryCache;
+import com.nifasat.expenseService.datasource.ReadYourWritesTracker;
+import com.nifasat.expenseService.dto.ExpenseDto;
+import com.nifasat.expenseService.dto.ExpenseHistoryBounds;
+import com.nifasat.expenseService.entity.Expense;
+import com.nifasat.expenseService.mapper.ExpenseMapper;
+import com.nifasat.expenseService.merchant.MerchantDictionary;
+import com.nifasat.expenseService.merchant.MerchantNormalizer;
+import com.nifasat.expenseService.repository.ExpenseRepository;
+import com.nifasat.expenseService.repository.ExpenseUpsertRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ExpenseArchiveServiceTest {
+
+	private static final String USER_ID = "user-1";
+
+	private static final YearMonth MONTH = YearMonth.of(2024, 1);
+
+	@TempDir
+	Path directory;
+
+	private final ExpenseRepository expenseRepository = mock(ExpenseRepository.class);
+
+	private ExpenseArchiveStore archiveStore;
+
+	private ExpenseArchiveService archiveService;
+
+	@BeforeEach
+	void setUp() {
+		archiveStore = new ExpenseArchiveStore(directory.toString(), Duration.ofMinutes(1));
+		archiveService = new ExpenseArchiveService();
+		ReflectionTestUtils.setField(archiveService, "expenseRepository", expenseRepository);
+		ReflectionTestUtils.setField(archiveService, "archiveStore", archiveStore);
+		ReflectionTestUtils.setField(archiveService, "transactionManager", mock(PlatformTransactionManager.class));
+		ReflectionTestUtils.setField(archiveService, "merchantDictionary", mock(MerchantDictionary.class));
+		ReflectionTestUtils.setField(archiveService, "merchantNormalizer", new MerchantNormalizer(List.of(), Map.of()));
+		archiveService.init();
+	}
+
+	@Test
+	void rowsWrittenWhileArchivingAreNotLost() {
+		Expense unchanged = expense(1L, "e-1", 100L);
+		Expense updated = expense(2L, "e-2", 200L);
+		Expense deleted = expense(3L, "e-3", 300L);
+		when(expenseRepository.historyBoundsByUserId(USER_ID)).thenReturn(bounds(unchanged.getCreatedAt()));
+		when(expenseRepository.findByUserIdInRange(eq(USER_ID), any(), any())).thenReturn(List.of(unchanged, updated, deleted));
+		// Between the read and the delete e-2 got a new amount and e-3 was deleted
+		when(expenseRepository.lockByIdIn(any())).thenReturn(List.of(expense(1L, "e-1", 100L), expense(2L, "e-2", 250L)));
+
+		int archived = archiveService.archiveUser(USER_ID, MONTH.plusMonths(1));
+
+		assertEquals(1, archived);
+		verify(expenseRepository).deleteByIdIn(List.of(1L));
+		List<Expense> month = archiveStore.read(USER_ID, MONTH);
+		assertEquals(List.of(1L, 2L), month.stream().map(Expense::getId).toList());
+	}
+
+	@Test
+	void deletedArchivedExpenseNoLongerShowsThrough() {
+		archive(expense(1L, "e-1", 100L), expense(2L, "e-2", 200L));
+		ExpenseRollupService rollupService = mock(ExpenseRollupService.class);
+		ExpenseService expenseService = expenseService(rollupService);
+
+		int deleted = expenseService.deleteExpense(USER_ID, new ExpenseDto("e-1", null, null, USER_ID, null, null, null));
+
+		assertEquals(1, deleted);
+		List<Expense> remaining = archiveService.withArchived(USER_ID, null, archiveStore.startOf(MONTH),
+				archiveStore.startOf(MONTH.plusMonths(1)), List.of());
+		assertEquals(List.of("e-2"), remaining.stream().map(Expense::getExternalId).toList());
+		verify(rollupService).refreshDay(eq(USER_ID), any());
+	}
+
+	@Test
+	void updatedArchivedExpenseReturnsToTheTableUnderItsArchivedId() {
+		archive(expense(1L, "e-1", 100L));
+		ExpenseUpsertRepository expenseUpsertRepository = mock(ExpenseUpsertRepository.class);
+		ExpenseService expenseService = expenseService(mock(ExpenseRollupService.class));
+		ReflectionTestUtils.setField(expenseService, "expenseUpsertRepository", expenseUpsertRepository);
+
+		boolean updated = expenseService.updateExpense(new ExpenseDto("e-1", null, 150L, USER_ID, null, null, null));
+
+		assertTrue(updated);
+		verify(expenseUpsertRepository).upsert(argThat(written -> written.size() == 1 && written.get(0).getId() == 1L
+				&& written.get(0).getAmountMinor() == 150L && "Cafe".equals(written.get(0).getMerchant())));
+	}
+
+	@Test
+	void archivedMonthPrefersTheRowsTheTableHoldsAgain() {
+		archive(expense(1L, "e-1", 100L), expense(2L, "e-2", 200L));
+		when(expenseRepository.findByUserIdAndCreatedAtBetween(eq(USER_ID), any(), any()))
+				.thenReturn(List.of(expense(2L, "e-2", 250L)));
+		Date start = archiveStore.startOf(MONTH.minusMonths(2));
+		Date end = archiveStore.startOf(MONTH.plusMonths(3));
+
+		assertEquals(List.of(MONTH), List.copyOf(archiveService.archivedMonths(USER_ID, start, end)));
+		List<Expense> month = archiveService.readMonth(USER_ID, MONTH, start, end);
+		assertEquals(List.of(100L, 250L), month.stream().map(Expense::getAmountMinor).toList());
+	}
+
+	// Runs the archiver over the expenses, none of which change in the meantime
+	private void archive(Expense... expenses) {
+		when(expenseRepository.historyBoundsByUserId(USER_ID)).thenReturn(bounds(expenses[0].getCreatedAt()));
+		when(expenseRepository.findByUserIdInRange(eq(USER_ID), any(), any())).thenReturn(List.of(expenses));
+		when(expenseRepository.lockByIdIn(any())).thenReturn(List.of(expenses));
+		assertEquals(expenses.length, archiveService.archiveUser(USER_ID, MONTH.plusMonths(1)));
+	}
+
+	private ExpenseService expenseService(ExpenseRollupService rollupService) {
+		ExpenseService expenseService = new ExpenseService();
+		ReflectionTestUtils.setField(expenseService, "expenseRepository", expenseRepository);
+		ReflectionTestUtils.setField(expenseService, "archiveService", archiveService);
+		ReflectionTestUtils.setField(expenseService, "rollupService", rollupService);
+		ReflectionTestUtils.setField(expenseService, "expenseMapper", new ExpenseMapper());
+		ReflectionTestUtils.setField(expenseService, "merchantDictionary", mock(MerchantDictionary.class));
+		ReflectionTestUtils.setField(expenseService, "summaryCache", mock(ExpenseSummaryCache.class));
+		ReflectionTestUtils.setField(expenseService, "readYourWritesTracker", mock(ReadYourWritesTracker.class));
+		ReflectionTestUtils.setField(expenseService, "eventPublisher", mock(ApplicationEventPublisher.class));
+		return expenseService;
+	}
+
+	private Expense expense(long id, String externalId, long amountMinor) {
+		return Expense.builder()
+				.id(id)
+				.userId(USER_ID)
+				.externalId(externalId)
+				.amountMinor(amountMinor)
+				.currency("INR")
+				.merchant("Cafe")
+				.createdAt(new Date(archiveStore.startOf(MONTH).getTime() + id * 60_000L))
+				.build();
+	}
+
+	private static ExpenseHistoryBounds bounds(Date firstCreatedAt) {
+		return new ExpenseHistoryBounds() {
+			@Override
+			public Long getExpenseCount() {
+				return 3L;
+			}
+
+			@Override
+			public Date getFirstCreatedAt() {
+				return firstCreatedAt;
+			}
+
+			@Override
+			public Date getLastCreatedAt() {
+				return firstCreatedAt;
+			}
+		};
+	}
+
+}
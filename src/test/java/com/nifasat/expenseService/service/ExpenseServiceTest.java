@@ -0,0 +1,87 @@
+package com.nifasat.expenseService.service;
+
+import com.nifasat.expenseService.cache.ExpenseSummaryCache;
+import com.nifasat.expenseService.datasource.ReadYourWritesTracker;
+import com.nifasat.expenseService.dto.ExpenseBatchResultDTO;
+import com.nifasat.expenseService.dto.ExpenseDto;
+import com.nifasat.expenseService.entity.Expense;
+import com.nifasat.expenseService.mapper.ExpenseMapper;
+import com.nifasat.expenseService.merchant.MerchantDictionary;
+import com.nifasat.expenseService.repository.ExpenseRepository;
+import com.nifasat.expenseService.repository.ExpenseUpsertRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ExpenseServiceTest {
+
+	private static final String USER_ID = "user-1";
+
+	private final ExpenseUpsertRepository expenseUpsertRepository = mock(ExpenseUpsertRepository.class);
+
+	// External ids of the rows in the table, standing in for the (user_id, external_id) unique key
+	private final Set<String> stored = new HashSet<>();
+
+	private ExpenseService service;
+
+	@BeforeEach
+	void setUp() {
+		when(expenseUpsertRepository.upsert(any())).thenAnswer(invocation -> {
+			List<Expense> inserted = new ArrayList<>();
+			for (Expense expense : invocation.<List<Expense>>getArgument(0)) {
+				if (stored.add(expense.getExternalId())) {
+					inserted.add(expense);
+				}
+			}
+			return inserted;
+		});
+		service = new ExpenseService();
+		ReflectionTestUtils.setField(service, "expenseRepository", mock(ExpenseRepository.class));
+		ReflectionTestUtils.setField(service, "expenseUpsertRepository", expenseUpsertRepository);
+		ReflectionTestUtils.setField(service, "rollupService", mock(ExpenseRollupService.class));
+		ReflectionTestUtils.setField(service, "expenseMapper", new ExpenseMapper());
+		ReflectionTestUtils.setField(service, "summaryCache", mock(ExpenseSummaryCache.class));
+		ReflectionTestUtils.setField(service, "readYourWritesTracker", mock(ReadYourWritesTracker.class));
+		ReflectionTestUtils.setField(service, "archiveService", mock(ExpenseArchiveService.class));
+		ReflectionTestUtils.setField(service, "eventPublisher", mock(ApplicationEventPublisher.class));
+		ReflectionTestUtils.setField(service, "merchantDictionary", mock(MerchantDictionary.class));
+	}
+
+	@Test
+	void resentExternalIdIsReportedAsUpdated() {
+		List<ExpenseBatchResultDTO> first = service.addExpenseBatch(USER_ID, List.of(expense("e-1", 1_250L)));
+		List<ExpenseBatchResultDTO> second = service.addExpenseBatch(USER_ID, List.of(expense("e-1", 1_500L), expense("e-2", 300L)));
+
+		assertEquals(ExpenseBatchResultDTO.Status.CREATED, first.get(0).getStatus());
+		assertEquals(ExpenseBatchResultDTO.Status.UPDATED, second.get(0).getStatus());
+		assertEquals("e-1", second.get(0).getExternalId());
+		assertEquals(ExpenseBatchResultDTO.Status.CREATED, second.get(1).getStatus());
+	}
+
+	@Test
+	void duplicateWithinBatchIsReportedAsUpdated() {
+		List<ExpenseBatchResultDTO> results = service.addExpenseBatch(USER_ID,
+				List.of(expense("e-1", 100L), expense(null, null), expense("e-1", 200L)));
+
+		assertEquals(ExpenseBatchResultDTO.Status.CREATED, results.get(0).getStatus());
+		assertEquals(ExpenseBatchResultDTO.Status.INVALID, results.get(1).getStatus());
+		assertEquals(ExpenseBatchResultDTO.Status.UPDATED, results.get(2).getStatus());
+	}
+
+	private static ExpenseDto expense(String externalId, Long amountMinor) {
+		return new ExpenseDto(externalId, null, amountMinor, null, "Cafe", "INR", new Date(1_700_000_000_000L));
+	}
+
+}
@@ -0,0 +1,120 @@
+package com.nifasat.expenseService.service;
+
+import com.nifasat.expenseService.archive.ExpenseArchiveStore;
+import com.nifasat.expenseService.dto.ExpenseHistoryBounds;
+import com.nifasat.expenseService.merchant.MerchantDictionary;
+import com.nifasat.expenseService.repository.ExpenseRepository;
+import com.nifasat.expenseService.summary.ExpenseSummaryAccumulator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ExpenseSummaryServiceTest {
+
+	private static final String USER_ID = "user-1";
+
+	private static final long START = 1_700_000_000_000L;
+
+	private final ExpenseRepository expenseRepository = mock(ExpenseRepository.class);
+
+	private final ExpenseRollupService rollupService = mock(ExpenseRollupService.class);
+
+	private final MerchantDictionary merchantDictionary = mock(MerchantDictionary.class);
+
+	private final List<Object[]> rows = new ArrayList<>();
+
+	private final AtomicInteger scans = new AtomicInteger();
+
+	@BeforeEach
+	void setUp() {
+		Random random = new Random(17);
+		long last = START;
+		for (long id = 1; id <= 20_000; id++) {
+			// Minute resolution over two months, so many rows share a timestamp with a slice boundary
+			long createdAt = START + random.nextInt(90_000) * 60_000L;
+			last = Math.max(last, createdAt);
+			rows.add(new Object[] {id, new Date(createdAt), (long) random.nextInt(500_000),
+					random.nextInt(4) == 0 ? "USD" : "INR", "merchant-" + random.nextInt(30), null});
+		}
+		Date firstCreatedAt = new Date(START);
+		Date lastCreatedAt = new Date(last);
+		when(expenseRepository.historyBoundsByUserId(USER_ID)).thenReturn(new ExpenseHistoryBounds() {
+			@Override
+			public Long getExpenseCount() {
+				return (long) rows.size();
+			}
+
+			@Override
+			public Date getFirstCreatedAt() {
+				return firstCreatedAt;
+			}
+
+			@Override
+			public Date getLastCreatedAt() {
+				return lastCreatedAt;
+			}
+		});
+		when(expenseRepository.streamSummaryRows(eq(USER_ID), any(), any())).thenAnswer(invocation -> {
+			scans.incrementAndGet();
+			long start = invocation.<Date>getArgument(1).getTime();
+			long end = invocation.<Date>getArgument(2).getTime();
+			return rows.stream().filter(row -> ((Date) row[1]).getTime() >= start && ((Date) row[1]).getTime() < end);
+		});
+		when(rollupService.getZoneId()).thenReturn(ZoneId.of("Asia/Kolkata"));
+		when(merchantDictionary.displayNameOf(any(), any())).thenAnswer(invocation -> invocation.getArgument(1));
+	}
+
+	@Test
+	void slicedSummaryEqualsSinglePass() {
+		ExpenseSummaryAccumulator single = summarize(Long.MAX_VALUE, Long.MAX_VALUE);
+		assertEquals(1, scans.getAndSet(0));
+
+		ExpenseSummaryAccumulator sliced = summarize(1_000, 700);
+
+		assertTrue(scans.get() >= 32, "expected the history to be split into many slices, got " + scans.get());
+		assertEquals(rows.size(), sliced.getCount());
+		assertEquals(single.getCount(), sliced.getCount());
+		assertEquals(single.getTotalAmountMinor(), sliced.getTotalAmountMinor());
+		assertEquals(single.getLargestExpenseId(), sliced.getLargestExpenseId());
+		assertEquals(single.getAverageDailyAmount(), sliced.getAverageDailyAmount());
+		assertEquals(single.getTopMerchant(), sliced.getTopMerchant());
+		assertEquals(single.getCurrencyTotals(), sliced.getCurrencyTotals());
+		for (double percentile : new double[] {50, 90, 99}) {
+			assertEquals(single.percentile(percentile), sliced.percentile(percentile));
+		}
+	}
+
+	private ExpenseSummaryAccumulator summarize(long parallelThreshold, long sliceRows) {
+		ExpenseSummaryService service = new ExpenseSummaryService();
+		ReflectionTestUtils.setField(service, "expenseRepository", expenseRepository);
+		ReflectionTestUtils.setField(service, "rollupService", rollupService);
+		ReflectionTestUtils.setField(service, "archiveStore", mock(ExpenseArchiveStore.class));
+		ReflectionTestUtils.setField(service, "transactionManager", mock(PlatformTransactionManager.class));
+		ReflectionTestUtils.setField(service, "merchantDictionary", merchantDictionary);
+		ReflectionTestUtils.setField(service, "parallelThreshold", parallelThreshold);
+		ReflectionTestUtils.setField(service, "sliceRows", sliceRows);
+		ReflectionTestUtils.setField(service, "parallelism", 4);
+		service.init();
+		try {
+			return service.summarize(USER_ID);
+		} finally {
+			service.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,95 @@
+package com.nifasat.expenseService.summary;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneId;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ExpenseSummaryAccumulatorTest {
+
+	private static final ZoneId KOLKATA = ZoneId.of("Asia/Kolkata");
+
+	private static final long START = 1_700_000_000_000L;
+
+	@Test
+	void hasNoPercentilesWithoutExpenses() {
+		ExpenseSummaryAccumulator summary = new ExpenseSummaryAccumulator(KOLKATA);
+
+		assertNull(summary.percentile(50));
+		assertNull(summary.getAverageDailyAmount());
+		assertEquals(-1, summary.getLargestExpenseId());
+	}
+
+	@Test
+	void everyPercentileOfOneExpenseIsThatExpense() {
+		ExpenseSummaryAccumulator summary = accumulate(4200);
+
+		assertEquals(42.0, summary.percentile(0));
+		assertEquals(42.0, summary.percentile(50));
+		assertEquals(42.0, summary.percentile(100));
+	}
+
+	@Test
+	void usesNearestRankOnAnEvenCount() {
+		ExpenseSummaryAccumulator summary = accumulate(400, 100, 300, 200);
+
+		assertEquals(1.0, summary.percentile(25));
+		assertEquals(2.0, summary.percentile(50));
+		assertEquals(3.0, summary.percentile(51));
+		assertEquals(4.0, summary.percentile(90));
+		assertEquals(4.0, summary.percentile(100));
+	}
+
+	@Test
+	void usesNearestRankOnAnOddCount() {
+		ExpenseSummaryAccumulator summary = accumulate(500, 100, 400, 200, 300);
+
+		assertEquals(1.0, summary.percentile(0));
+		assertEquals(1.0, summary.percentile(20));
+		assertEquals(2.0, summary.percentile(21));
+		assertEquals(3.0, summary.percentile(50));
+		assertEquals(5.0, summary.percentile(99));
+	}
+
+	@Test
+	void mergedSlicesEqualOnePass() {
+		Random random = new Random(3);
+		ExpenseSummaryAccumulator single = new ExpenseSummaryAccumulator(KOLKATA);
+		ExpenseSummaryAccumulator[] slices = {new ExpenseSummaryAccumulator(KOLKATA), new ExpenseSummaryAccumulator(KOLKATA),
+				new ExpenseSummaryAccumulator(KOLKATA)};
+		int rows = 30_000;
+		for (int i = 0; i < rows; i++) {
+			long createdAt = START + i * 600_000L;
+			long amountMinor = random.nextInt(1_000_000);
+			String currency = random.nextInt(5) == 0 ? "USD" : "INR";
+			String merchant = random.nextInt(10) == 0 ? null : "merchant-" + random.nextInt(40);
+			single.add(i, createdAt, amountMinor, currency, merchant);
+			// Contiguous time slices, as the summary service splits them
+			slices[i * slices.length / rows].add(i, createdAt, amountMinor, currency, merchant);
+		}
+
+		ExpenseSummaryAccumulator merged = slices[0].merge(slices[1].merge(slices[2]));
+
+		assertEquals(single.getCount(), merged.getCount());
+		assertEquals(single.getTotalAmountMinor(), merged.getTotalAmountMinor());
+		assertEquals(single.getLargestExpenseId(), merged.getLargestExpenseId());
+		assertEquals(single.getAverageDailyAmount(), merged.getAverageDailyAmount());
+		assertEquals(single.getTopMerchant(), merged.getTopMerchant());
+		assertEquals(single.getCurrencyTotals(), merged.getCurrencyTotals());
+		for (double percentile : new double[] {0, 25, 50, 90, 95, 99, 100}) {
+			assertEquals(single.percentile(percentile), merged.percentile(percentile));
+		}
+	}
+
+	private static ExpenseSummaryAccumulator accumulate(long... amountsMinor) {
+		ExpenseSummaryAccumulator summary = new ExpenseSummaryAccumulator(KOLKATA);
+		for (int i = 0; i < amountsMinor.length; i++) {
+			summary.add(i, START + i * 86_400_000L, amountsMinor[i], "INR", "merchant");
+		}
+		return summary;
+	}
+
+}
@@ -0,0 +1,66 @@
+package com.nifasat.expenseService.summary;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LongLongOpenHashMapTest {
+
+	@Test
+	void sumsCollidingKeysThroughLinearProbing() {
+		LongLongOpenHashMap map = new LongLongOpenHashMap(4);
+		// In the initial 32-slot table 0, 50, 57 and 114 hash to slot 0 and 7 and 36 to slot 1, so their runs overlap
+		long[] keys = {0, 50, 7, 57, 36, 114};
+		for (long key : keys) {
+			map.add(key, key + 1);
+			map.add(key, 10);
+		}
+
+		assertEquals(keys.length, map.size());
+		for (long key : keys) {
+			assertEquals(key + 11, map.get(key));
+		}
+		// Also homed at slot 0: the lookup walks the whole run before it finds the empty slot
+		assertEquals(0, map.get(121));
+	}
+
+	@Test
+	void keepsEverySumAcrossResizes() {
+		LongLongOpenHashMap map = new LongLongOpenHashMap(1);
+		Map<Long, Long> expected = new HashMap<>();
+		Random random = new Random(11);
+		for (int i = 0; i < 50_000; i++) {
+			long key = random.nextInt(20_000) - 10_000;
+			long value = random.nextInt(1_000);
+			map.add(key, value);
+			expected.merge(key, value, Long::sum);
+		}
+
+		assertEquals(expected.size(), map.size());
+		Map<Long, Long> actual = new HashMap<>();
+		map.forEach(actual::put);
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	void addAllMergesSums() {
+		LongLongOpenHashMap first = new LongLongOpenHashMap(16);
+		first.add(19_000, 5);
+		first.add(19_001, 7);
+		LongLongOpenHashMap second = new LongLongOpenHashMap(16);
+		second.add(19_001, 3);
+		second.add(19_002, 1);
+
+		first.addAll(second);
+
+		assertEquals(3, first.size());
+		assertEquals(5, first.get(19_000));
+		assertEquals(10, first.get(19_001));
+		assertEquals(1, first.get(19_002));
+	}
+
+}
@@ -0,0 +1,55 @@
+package com.nifasat.expenseService.summary;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class StringLongOpenHashMapTest {
+
+	@Test
+	void keepsKeysWithEqualHashCodesApart() {
+		StringLongOpenHashMap map = new StringLongOpenHashMap(4);
+		// "Aa" and "BB" share a hash code, as do "AaAa", "AaBB" and "BBAa"
+		for (String key : new String[] {"Aa", "BB", "AaAa", "AaBB", "BBAa", "Aa"}) {
+			map.add(key, 100);
+		}
+
+		assertEquals(Map.of("Aa", 200L, "BB", 100L, "AaAa", 100L, "AaBB", 100L, "BBAa", 100L), map.toMap());
+		assertEquals("Aa", map.maxKey());
+	}
+
+	@Test
+	void keepsEverySumAcrossResizes() {
+		StringLongOpenHashMap map = new StringLongOpenHashMap(1);
+		Map<String, Long> expected = new HashMap<>();
+		Random random = new Random(5);
+		for (int i = 0; i < 20_000; i++) {
+			String key = "merchant-" + random.nextInt(3_000);
+			map.add(key, i);
+			expected.merge(key, (long) i, Long::sum);
+		}
+
+		assertEquals(expected, map.toMap());
+	}
+
+	@Test
+	void addAllMergesSumsAndMaxKeyFollows() {
+		StringLongOpenHashMap first = new StringLongOpenHashMap(4);
+		first.add("amazon", 500);
+		first.add("swiggy", 300);
+		StringLongOpenHashMap second = new StringLongOpenHashMap(4);
+		second.add("swiggy", 400);
+
+		first.addAll(second);
+
+		assertEquals(Map.of("amazon", 500L, "swiggy", 700L), first.toMap());
+		assertEquals("swiggy", first.maxKey());
+		assertNull(new StringLongOpenHashMap(4).maxKey());
+	}
+
+}